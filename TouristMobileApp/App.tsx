@@ -28,6 +28,19 @@ interface Profile {
 }
 
 const BASE_URL = "http://10.60.59.87:8080"; // update to your machine IP
+const OUTBOX_BATCH_SIZE = 50; // MainController.MAX_BATCH_SIZE
+
+// straight-line distance in metres (haversine)
+function distanceMeters(lat1: number, lon1: number, lat2: number, lon2: number) {
+  const R = 6371000;
+  const dLat = ((lat2 - lat1) * Math.PI) / 180;
+  const dLon = ((lon2 - lon1) * Math.PI) / 180;
+  const a =
+    Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+    Math.cos((lat1 * Math.PI) / 180) * Math.cos((lat2 * Math.PI) / 180) *
+    Math.sin(dLon / 2) * Math.sin(dLon / 2);
+  return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+}
 
 export default function App() {
   const [username, setUsername] = useState("");
@@ -44,6 +57,10 @@ export default function App() {
 
 
   const [watchId, setWatchId] = useState<number | null>(null);
+
+  // server-recommended reporting cadence, refreshed from every location PUT response
+  const cadenceRef = useRef({ nextReportMs: 2000, distanceFilterM: 5 });
+  const lastReportRef = useRef<{ lat: number; lon: number; at: number } | null>(null);
   const [initialCoords, setInitialCoords] = useState<[number, number] | null>(null);
 
   // === New states for panic / alerts / efir ===
@@ -62,6 +79,10 @@ export default function App() {
   const [missingDetails, setMissingDetails] = useState("");
 
   const [alertsLog, setAlertsLog] = useState<any[]>([]);
+
+  // alerts that couldn't reach the server; uploaded in one batch once we're back online
+  const outboxRef = useRef<any[]>([]);
+  const outboxRetryRef = useRef({ failures: 0, nextAttemptAt: 0 });
   const [generatedEfirLogs, setGeneratedEfirLogs] = useState<any[]>([]);
   const [showEfirList, setShowEfirList] = useState(false);
 
@@ -84,6 +105,35 @@ export default function App() {
     }
   }
 
+  // report when the recommended interval has passed or we moved past the distance filter
+  const shouldReport = (lat: number, lon: number) => {
+    const last = lastReportRef.current;
+    if (!last) return true;
+    const { nextReportMs, distanceFilterM } = cadenceRef.current;
+    return Date.now() - last.at >= nextReportMs
+      || distanceMeters(last.lat, last.lon, lat, lon) >= distanceFilterM;
+  };
+
+  const reportLocation = (id: number | undefined, latitude: number, longitude: number) => {
+    if (!id || !shouldReport(latitude, longitude)) return;
+    lastReportRef.current = { lat: latitude, lon: longitude, at: Date.now() };
+    fetch(`${BASE_URL}/api/tourists/${id}/location`, {
+      method: "PUT",
+      headers: { "Content-Type": "application/json" },
+      body: JSON.stringify({ latitude, longitude }),
+    })
+      .then((res) => res.json().catch(() => null)) // 200 or 429 both carry the cadence
+      .then((cadence) => {
+        if (cadence?.nextReportMs) {
+          cadenceRef.current = {
+            nextReportMs: cadence.nextReportMs,
+            distanceFilterM: cadence.distanceFilterM,
+          };
+        }
+      })
+      .catch((err) => console.error("Failed to send location:", err));
+  };
+
   useEffect(() => {
     async function startTracking() {
       if (!loggedIn || !touristId) return;
@@ -107,14 +157,7 @@ export default function App() {
             const { latitude, longitude } = pos.coords;
             console.log("Got position:", latitude, longitude);
 
-            fetch(`${BASE_URL}/api/tourists/${profile?.id}/location`, {
-              method: "PUT",
-              headers: { "Content-Type": "application/json" },
-              body: JSON.stringify({ latitude, longitude }),
-            })
-              .catch((err) =>
-                console.error("Failed to send location:", err)
-              );
+            reportLocation(profile?.id, latitude, longitude);
           },
           (err) => console.error("Location error:", err),
           { enableHighAccuracy: true, distanceFilter: 5, interval: 2000, fastestInterval: 1000 }
@@ -135,6 +178,7 @@ export default function App() {
       async (position) => {
         const lat = position.coords.latitude;
         const lon = position.coords.longitude;
+        if (!shouldReport(lat, lon)) return; // honour the server-recommended cadence
 
         try {
           const payload: any = {
@@ -164,11 +208,7 @@ export default function App() {
 
           // Now update location on backend using the returned id
           if (data?.id) {
-            fetch(`${BASE_URL}/api/tourists/${data.id}/location`, {
-              method: "PUT",
-              headers: { "Content-Type": "application/json" },
-              body: JSON.stringify({ latitude: lat, longitude: lon }),
-            }).catch(err => console.error("Failed to update location", err));
+            reportLocation(data.id, lat, lon);
           }
 
         } catch (err) {
@@ -263,10 +303,36 @@ export default function App() {
     );
   };
 
+  // last location set we downloaded; refreshes only fetch what changed since its version
+  const locationsCacheRef = useRef<{ version: number; etag: string | null; byId: Map<number, any> } | null>(null);
+
+  const loadLocations = async () => {
+    const cache = locationsCacheRef.current;
+    if (cache) {
+      const res = await fetch(`${BASE_URL}/api/tourists/locations/changes?since=${cache.version}`, {
+        headers: cache.etag ? { "If-None-Match": cache.etag } : {},
+      });
+      if (res.status === 304) return Array.from(cache.byId.values());
+      if (res.ok) {
+        const delta = await res.json();
+        const byId = delta.full ? new Map<number, any>() : new Map(cache.byId);
+        (delta.tourists || []).forEach((t: any) => byId.set(t.id, t));
+        locationsCacheRef.current = { version: delta.version, etag: res.headers.get("ETag"), byId };
+        return Array.from(byId.values());
+      }
+    }
+    const res = await fetch(`${BASE_URL}/api/tourists/locations`);
+    const data = await res.json();
+    const version = Number(res.headers.get("X-Locations-Version"));
+    if (version) {
+      locationsCacheRef.current = { version, etag: res.headers.get("ETag"), byId: new Map(data.map((t: any) => [t.id, t])) };
+    }
+    return data;
+  };
+
   const handleHeatMap = async () => {
     try {
-      const res = await fetch(`${BASE_URL}/api/tourists/locations`);
-      const data = await res.json();
+      const data = await loadLocations();
       // convert to [lat, lng, intensity] format, intensity = 0.5 by default
       const points = data
         .filter((t: any) => t.latitude != null && t.longitude != null)
@@ -450,6 +516,7 @@ export default function App() {
     }
 
     const basePayload: any = {
+      clientId: `${Date.now()}-${Math.random().toString(36).slice(2, 10)}`, // lets the server drop re-sends
       type: panicType,
       senderUsername: username,
       senderTouristId: profile?.touristId,
@@ -477,6 +544,17 @@ export default function App() {
       basePayload.details = missingDetails || "";
     }
 
+    // keep it in the outbox; it goes out with the next batch sync. The outbox lives in
+    // memory only, so don't promise delivery if the app is closed before then.
+    const queueAlert = (reason: string) => {
+      outboxRef.current.push(basePayload);
+      setAlertsLog(prev => [{ ...basePayload, serverResponse: null, queued: true }, ...prev]);
+      Alert.alert("Saved", `${reason} The alert will be retried automatically while the app stays open. If it is urgent, please call emergency services.`);
+      resetPanicForm();
+      setShowPanicForm(false);
+      setShowPanicOptions(false);
+    };
+
     try {
       const res = await fetch(`${BASE_URL}/api/main/sendAlert`, {
         method: "POST",
@@ -484,6 +562,13 @@ export default function App() {
         body: JSON.stringify(basePayload),
       });
 
+      // server overloaded or failing: worth retrying, the clientId makes re-sends safe
+      if (res.status >= 500 || res.status === 429) {
+        console.error("sendAlert failed", res.status);
+        queueAlert("The server is busy right now.");
+        return;
+      }
+
       if (!res.ok) {
         const err = await res.text();
         console.error("sendAlert failed", err);
@@ -513,10 +598,42 @@ export default function App() {
 
     } catch (err) {
       console.error("sendAlert error", err);
-      Alert.alert("Error", "Network error while sending alert");
+      queueAlert("No network right now.");
     }
   };
 
+  // upload the outbox, at most OUTBOX_BATCH_SIZE alerts per request (the server's limit);
+  // backs off (with jitter) while the network is still down
+  const flushOutbox = async () => {
+    const pending = outboxRef.current.slice(0, OUTBOX_BATCH_SIZE);
+    const retry = outboxRetryRef.current;
+    if (pending.length === 0 || Date.now() < retry.nextAttemptAt) return;
+    try {
+      const res = await fetch(`${BASE_URL}/api/main/sendAlerts`, {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify({ alerts: pending }),
+      });
+      if (!res.ok) throw new Error(`sendAlerts failed: ${res.status}`);
+      const data = await res.json();
+      const done = new Set((data?.results || []).map((r: any) => r.clientId));
+      outboxRef.current = outboxRef.current.filter(a => !done.has(a.clientId));
+      outboxRetryRef.current = { failures: 0, nextAttemptAt: 0 };
+      if (data?.efirs?.length) fetchEfirsOnce();
+      if (done.size > 0 && outboxRef.current.length > 0) flushOutbox(); // next chunk right away
+    } catch (err) {
+      const failures = retry.failures + 1;
+      const delay = Math.min(5 * 60 * 1000, 15000 * 2 ** (failures - 1)) * (0.5 + Math.random());
+      outboxRetryRef.current = { failures, nextAttemptAt: Date.now() + delay };
+    }
+  };
+
+  useEffect(() => {
+    if (!loggedIn) return;
+    const interval = setInterval(flushOutbox, 15000);
+    return () => clearInterval(interval);
+  }, [loggedIn]);
+
   const resetPanicForm = () => {
     setPanicType(null);
     setAlertLocation("");
@@ -44,6 +44,20 @@ export default function App() {
             setTimeout(() => setPopup(null), 4000);
           } catch (e) { console.error(e); }
         });
+        // alerts synced from a phone's offline outbox arrive as one message
+        client.subscribe("/topic/alerts/batch", (msg) => {
+          try {
+            const body = JSON.parse(msg.body);
+            const batchAlerts = body.alerts || [];
+            const batchEfirs = body.efirs || [];
+            if (batchAlerts.length) {
+              setPopup({ type: "alert", data: batchAlerts[batchAlerts.length - 1] });
+              setTimeout(() => setPopup(null), 4000);
+            }
+            setAlerts(prev => [...[...batchAlerts].reverse(), ...prev]);
+            setEfirs(prev => [...[...batchEfirs].reverse(), ...prev]);
+          } catch (e) { console.error(e); }
+        });
       },
       onStompError: (err) => {
         console.error("Stomp error", err);
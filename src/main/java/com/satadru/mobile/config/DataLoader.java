@@ -2,6 +2,7 @@ package com.satadru.mobile.config;
 
 import com.satadru.mobile.model.Tourist;
 import com.satadru.mobile.repository.TouristRepository;
+import com.satadru.mobile.service.LocationSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -20,6 +21,9 @@ public class DataLoader implements CommandLineRunner {
     @Autowired
     private SimpMessagingTemplate simpMessagingTemplate;
 
+    @Autowired
+    private LocationSnapshotService locationSnapshotService;
+
     @Override
     public void run(String... args) throws Exception {
         
@@ -46,7 +50,7 @@ public class DataLoader implements CommandLineRunner {
 
         // optional: broadcast initial locations to any connected WebSocket clients
         try {
-            var all = touristRepository.findAll();
+            var all = locationSnapshotService.publishAll().getTourists();
             simpMessagingTemplate.convertAndSend("/topic/locations", all);
         } catch (Exception ignored) {
             // if no websocket configured/available yet, ignore.
@@ -8,16 +8,29 @@ import com.satadru.mobile.model.Alert;
 import com.satadru.mobile.model.Efir;
 import com.satadru.mobile.repository.AlertRepository;
 import com.satadru.mobile.repository.EfirRepository;
+import com.satadru.mobile.service.ArchiveService;
+import com.satadru.mobile.service.DashboardStatsService;
+import com.satadru.mobile.service.LocationCadenceService;
+import com.satadru.mobile.service.LocationSnapshotService;
+import com.satadru.mobile.service.MovementFilterService;
+import com.satadru.mobile.service.SearchIndexService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/tourists")
@@ -36,32 +49,102 @@ public class DatabaseController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private LocationSnapshotService locationSnapshotService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private LocationCadenceService locationCadenceService;
+
+    @Autowired
+    private MovementFilterService movementFilterService;
+
     // Create (register) a tourist
     @PostMapping
     public ResponseEntity<Tourist> createTourist(@RequestBody Tourist tourist) {
         Tourist saved = touristRepository.save(tourist);
-        messagingTemplate.convertAndSend("/topic/locations", touristRepository.findAll());
+        LocationSnapshotService.Snapshot snapshot = locationSnapshotService.publish(saved);
+        messagingTemplate.convertAndSend("/topic/locations", snapshot.getTourists());
         return ResponseEntity.ok(saved);
     }
 
     // Update only location for an existing tourist (by DB id)
+    // Response carries the recommended next report interval / distance filter;
+    // 429 (not persisted) when ingest is overloaded and this tourist isn't a priority
     @PutMapping("/{id}/location")
     public ResponseEntity<?> updateLocation(@PathVariable Long id, @RequestBody LocationPayload payload) {
         Optional<Tourist> opt = touristRepository.findById(id);
         if (opt.isEmpty())
             return ResponseEntity.notFound().build();
         Tourist t = opt.get();
-        t.setLatitude(payload.getLatitude());
-        t.setLongitude(payload.getLongitude());
+        // the app is alive even if this fix is filtered out or shed below
+        movementFilterService.touch(t.getId());
+        // jitter around the last stored position is dropped before admission, so it
+        // never uses up ingest capacity
+        MovementFilterService.Decision decision =
+                movementFilterService.accept(t.getId(), payload.getLatitude(), payload.getLongitude());
+        LocationCadenceService.Cadence cadence = locationCadenceService.onFix(
+                t, payload.getLatitude(), payload.getLongitude(), decision.isPersist());
+        if (!decision.isPersist()) {
+            return ResponseEntity.ok(cadence);
+        }
+        if (cadence.isShed()) {
+            return ResponseEntity.status(429)
+                    .header("Retry-After", String.valueOf(Math.max(1, cadence.getNextReportMs() / 1000)))
+                    .body(cadence);
+        }
+        t.setLatitude(decision.getLatitude());
+        t.setLongitude(decision.getLongitude());
         touristRepository.save(t);
-        messagingTemplate.convertAndSend("/topic/locations", touristRepository.findAll());
-        return ResponseEntity.ok().build();
+        movementFilterService.markPersisted(t.getId(), decision);
+        LocationSnapshotService.Snapshot snapshot = locationSnapshotService.publish(t);
+        messagingTemplate.convertAndSend("/topic/locations", snapshot.getTourists());
+        return ResponseEntity.ok(cadence);
+    }
+
+    // Last time each tourist (by DB id) reported a fix, including filtered-out and shed ones
+    @GetMapping("/last-seen")
+    public Map<Long, LocalDateTime> getLastSeen() {
+        return movementFilterService.getLastSeen();
     }
 
-    // Get all for map initial load
+    // Get all for map initial load (served from the cached snapshot; 304 if If-None-Match matches)
     @GetMapping("/locations")
-    public List<Tourist> getAllLocations() {
-        return touristRepository.findAll();
+    public ResponseEntity<List<Tourist>> getAllLocations(WebRequest request) {
+        LocationSnapshotService.Snapshot snapshot = locationSnapshotService.current();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null; // 304 already written by checkNotModified
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .header("X-Locations-Version", String.valueOf(snapshot.getVersion()))
+                .body(snapshot.getTourists());
+    }
+
+    // Only the tourists whose location changed after the given version
+    // (304 only when If-None-Match matches; an unknown version gets the full set)
+    @GetMapping("/locations/changes")
+    public ResponseEntity<?> getLocationChanges(@RequestParam long since, WebRequest request) {
+        LocationSnapshotService.Snapshot snapshot = locationSnapshotService.current();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null; // 304 already written by checkNotModified
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(Map.of(
+                        "version", snapshot.getVersion(),
+                        "full", locationSnapshotService.isStale(snapshot, since),
+                        "tourists", locationSnapshotService.changesSince(snapshot, since)));
     }
 
     // find by username
@@ -76,9 +159,35 @@ public class DatabaseController {
     @PostMapping("/alerts")
     public ResponseEntity<Alert> createAlert(@RequestBody Alert alert) {
         Alert saved = alertRepository.save(alert);
+        publishAlert(saved);
+        return ResponseEntity.ok(saved);
+    }
+
+    // After an alert is stored: update the in-memory views and broadcast it
+    public void publishAlert(Alert saved) {
+        searchIndexService.indexAlert(saved);
+        dashboardStatsService.recordAlert(saved);
+        locationCadenceService.recordAlert(saved);
         // broadcast the new alert object to STOMP topic /topic/alerts
         messagingTemplate.convertAndSend("/topic/alerts", saved);
-        return ResponseEntity.ok(saved);
+        messagingTemplate.convertAndSend("/topic/stats", dashboardStatsService.snapshot(24));
+    }
+
+    // After an outbox batch commits: update the in-memory views and send ONE
+    // /topic/alerts/batch message instead of one /topic/alerts + /topic/efirs per row
+    public void publishAlertBatch(List<Alert> alerts, List<Efir> efirs) {
+        if (alerts.isEmpty() && efirs.isEmpty()) return;
+        for (Alert a : alerts) {
+            searchIndexService.indexAlert(a);
+            dashboardStatsService.recordAlert(a);
+            locationCadenceService.recordAlert(a);
+        }
+        for (Efir e : efirs) {
+            searchIndexService.indexEfir(e);
+            dashboardStatsService.recordEfir(e);
+        }
+        messagingTemplate.convertAndSend("/topic/alerts/batch", Map.of("alerts", alerts, "efirs", efirs));
+        messagingTemplate.convertAndSend("/topic/stats", dashboardStatsService.snapshot(24));
     }
 
     // New: get all alerts
@@ -87,13 +196,44 @@ public class DatabaseController {
         return alertRepository.findAll();
     }
 
+    // Single alert by id, falling back to the archive
+    @GetMapping("/alerts/{id}")
+    public ResponseEntity<Alert> getAlert(@PathVariable Long id) {
+        return alertRepository.findById(id)
+                .or(() -> archiveService.findAlert(id))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Alerts dated within [from, to] across the live table and the archive
+    @GetMapping("/alerts/range")
+    public List<Alert> getAlertsBetween(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return mergeById(alertRepository.findByDateTimeBetween(from, to),
+                archiveService.findAlertsBetween(from, to), Alert::getId);
+    }
+
+    // Alerts sent by one user across the live table and the archive
+    public List<Alert> getAlertsBySender(String username) {
+        return mergeById(alertRepository.findBySenderUsername(username),
+                archiveService.findAlertsBySender(username), Alert::getId);
+    }
+
     // New: create efir (broadcast)
     @PostMapping("/efirs")
     public ResponseEntity<Efir> createEfir(@RequestBody Efir efir) {
         Efir saved = efirRepository.save(efir);
+        publishEfir(saved);
+        return ResponseEntity.ok(saved);
+    }
+
+    // After an E-FIR is stored: update the in-memory views and broadcast it
+    public void publishEfir(Efir saved) {
+        searchIndexService.indexEfir(saved);
+        dashboardStatsService.recordEfir(saved);
         // broadcast to /topic/efirs
         messagingTemplate.convertAndSend("/topic/efirs", saved);
-        return ResponseEntity.ok(saved);
+        messagingTemplate.convertAndSend("/topic/stats", dashboardStatsService.snapshot(24));
     }
 
     // New: get all efirs
@@ -102,6 +242,90 @@ public class DatabaseController {
         return efirRepository.findAll();
     }
 
+    // Single efir by id, falling back to the archive
+    @GetMapping("/efirs/{id}")
+    public ResponseEntity<Efir> getEfir(@PathVariable Long id) {
+        return efirRepository.findById(id)
+                .or(() -> archiveService.findEfir(id))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // E-FIRs dated within [from, to] across the live table and the archive
+    @GetMapping("/efirs/range")
+    public List<Efir> getEfirsBetween(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return mergeById(efirRepository.findByDateTimeBetween(from, to),
+                archiveService.findEfirsBetween(from, to), Efir::getId);
+    }
+
+    // E-FIRs for one user across the live table and the archive
+    public List<Efir> getEfirsBySender(String username) {
+        return mergeById(efirRepository.findBySenderUsername(username),
+                archiveService.findEfirsBySender(username), Efir::getId);
+    }
+
+    // Archive segments (id/date range per file)
+    @GetMapping("/archive")
+    public List<Map<String, Object>> getArchiveSegments() {
+        return archiveService.segments();
+    }
+
+    // Live counters: alerts per type, efirs per station, hourly buckets for the last `hours`
+    @GetMapping("/stats")
+    public Map<String, Object> getStats(@RequestParam(defaultValue = "24") int hours) {
+        return dashboardStatsService.snapshot(hours);
+    }
+
+    // Full-text search over alert/efir details via the in-memory index
+    // kind = alert | efir (both when omitted); type filters alerts, station filters efirs
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam String q,
+                                    @RequestParam(required = false) String kind,
+                                    @RequestParam(required = false) String type,
+                                    @RequestParam(required = false) String station,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        if (kind != null && !"alert".equalsIgnoreCase(kind) && !"efir".equalsIgnoreCase(kind)) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", "kind must be alert or efir"));
+        }
+        int max = Math.max(1, Math.min(limit, 500));
+        Map<String, Object> resp = new HashMap<>();
+        if (kind == null || "alert".equalsIgnoreCase(kind)) {
+            List<Long> ids = searchIndexService.searchAlerts(q, type, from, to, max);
+            resp.put("alerts", inIdOrder(alertRepository.findAllById(ids), ids, Alert::getId, archiveService::findAlert));
+        }
+        if (kind == null || "efir".equalsIgnoreCase(kind)) {
+            List<Long> ids = searchIndexService.searchEfirs(q, station, from, to, max);
+            resp.put("efirs", inIdOrder(efirRepository.findAllById(ids), ids, Efir::getId, archiveService::findEfir));
+        }
+        return ResponseEntity.ok(resp);
+    }
+
+    // findAllById doesn't keep order; put rows back in the index's newest-first order,
+    // taking ids that are no longer in the table from the archive
+    private static <T> List<T> inIdOrder(List<T> rows, List<Long> ids, Function<T, Long> idOf,
+                                         Function<Long, Optional<T>> archived) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T row : rows) byId.put(idOf.apply(row), row);
+        List<T> ordered = new ArrayList<>();
+        for (Long id : ids) {
+            T row = byId.get(id);
+            if (row == null) row = archived.apply(id).orElse(null);
+            if (row != null) ordered.add(row);
+        }
+        return ordered;
+    }
+
+    // live rows win over archived copies with the same id (possible after an interrupted archive run)
+    private static <T> List<T> mergeById(List<T> live, List<T> archived, Function<T, Long> idOf) {
+        Map<Long, T> byId = new LinkedHashMap<>();
+        for (T row : archived) byId.put(idOf.apply(row), row);
+        for (T row : live) byId.put(idOf.apply(row), row);
+        return new ArrayList<>(byId.values());
+    }
+
     // small DTO class for location updates
     public static class LocationPayload {
         private Double latitude;
@@ -4,11 +4,18 @@ import com.satadru.mobile.model.Alert;
 import com.satadru.mobile.model.Efir;
 import com.satadru.mobile.model.Tourist;
 import com.satadru.mobile.repository.TouristRepository;
+import com.satadru.mobile.service.AlertSyncService;
+import com.satadru.mobile.util.GeoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 
@@ -17,14 +24,22 @@ import java.util.*;
 @CrossOrigin(origins = "*")
 public class MainController {
 
+    private static final Logger log = LoggerFactory.getLogger(MainController.class);
+
     private static final Set<String> HARDCODED_IDS = Set.of("T002", "T003", "T004", "T005", "T006");
 
+    // largest outbox upload accepted by /sendAlerts (one transaction, one broadcast)
+    static final int MAX_BATCH_SIZE = 50;
+
     @Autowired
     private TouristRepository touristRepository;
 
     @Autowired
     private DatabaseController databaseController;
 
+    @Autowired
+    private AlertSyncService alertSyncService;
+
     /**
      * loginOrRegister payload (JSON):
      * {
@@ -81,84 +96,167 @@ public class MainController {
     }
 
     // NEW: receive alerts from mobile app
+    // optional "clientId": a re-send of an alert already stored returns the stored one.
+    // The alert and its auto-generated E-FIR are stored in one transaction, so an alert
+    // found by clientId always has its E-FIR.
     @PostMapping("/sendAlert")
     public ResponseEntity<?> sendAlert(@RequestBody Map<String, Object> payload) {
+        Alert alert = null;
         try {
-            String type = (String) payload.get("type"); // distress | crime | missing
-            String senderUsername = (String) payload.get("senderUsername");
-            String senderTouristId = payload.get("senderTouristId") == null ? null
-                    : String.valueOf(payload.get("senderTouristId"));
-            String location = payload.get("location") == null ? "" : String.valueOf(payload.get("location"));
-            String details = payload.get("details") == null ? "" : String.valueOf(payload.get("details"));
-            String dateTimeStr = payload.get("dateTime") == null ? null : String.valueOf(payload.get("dateTime"));
-
-            LocalDateTime dateTime = LocalDateTime.now();
-            if (dateTimeStr != null) {
-                try {
-                    dateTime = LocalDateTime.parse(dateTimeStr);
-                } catch (DateTimeParseException e) {
-                    // fallback to now
-                }
-            }
+            alert = toAlert(payload);
 
-            Alert alert = new Alert();
-            alert.setType(type);
-            alert.setSenderUsername(senderUsername);
-            alert.setSenderTouristId(senderTouristId);
-            alert.setDateTime(dateTime);
-            alert.setLocation(location);
-            alert.setDetails(details);
-
-            // missing-specific
-            if ("missing".equalsIgnoreCase(type)) {
-                alert.setMissingName((String) payload.getOrDefault("missingName", ""));
-                alert.setMissingTouristId((String) payload.getOrDefault("missingTouristId", ""));
-                alert.setMissingLastSeen((String) payload.getOrDefault("missingLastSeen", ""));
+            AlertSyncService.SyncResult result =
+                    alertSyncService.sync(List.of(alert), a -> needsEfir(a) ? generateEfirForAlert(a) : null);
+            if (result.getCreated().isEmpty()) {
+                return duplicateResponse(result.getDuplicates().values().iterator().next());
             }
 
-            // Save alert via DatabaseController (which will broadcast it to /topic/alerts)
-            ResponseEntity<Alert> savedResp = databaseController.createAlert(alert);
-            Alert savedAlert = savedResp.getBody();
-
+            // broadcast on /topic/alerts and /topic/efirs as before
+            Alert savedAlert = result.getCreated().get(0);
+            databaseController.publishAlert(savedAlert);
             Map<String, Object> resp = new HashMap<>();
             resp.put("alert", savedAlert);
-
-            // If crime or missing -> auto-generate E-FIR
-            if ("crime".equalsIgnoreCase(type) || "missing".equalsIgnoreCase(type)) {
-                Efir efir = generateEfirForAlert(savedAlert);
-                ResponseEntity<Efir> efirResp = databaseController.createEfir(efir);
-                resp.put("efir", efirResp.getBody());
+            for (Efir efir : result.getEfirs()) {
+                databaseController.publishEfir(efir);
+                resp.put("efir", efir);
             }
-
             return ResponseEntity.ok(resp);
+        } catch (DataIntegrityViolationException ex) {
+            // the same clientId was stored by a concurrent re-send; answer like any other duplicate
+            Optional<Long> existingId = alertSyncService.findExisting(alert == null ? null : alert.getClientId());
+            if (existingId.isPresent()) {
+                return duplicateResponse(existingId.get());
+            }
+            log.error("sendAlert failed", ex);
+            return ResponseEntity.status(500).body(Map.of("status", "error", "message", ex.getMessage()));
         } catch (Exception ex) {
             ex.printStackTrace();
             return ResponseEntity.status(500).body(Map.of("status", "error", "message", ex.getMessage()));
         }
     }
 
+    private ResponseEntity<?> duplicateResponse(Long alertId) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("alert", databaseController.getAlert(alertId).getBody());
+        resp.put("duplicate", true);
+        return ResponseEntity.ok(resp);
+    }
+
+    /**
+     * Batch upload of the phone's offline outbox.
+     * payload: { "alerts": [ { "clientId": "...", ...same fields as sendAlert... }, ... ] }
+     *
+     * Alerts whose clientId was already stored are skipped, the rest (plus their
+     * E-FIRs) are inserted in one transaction and broadcast once on /topic/alerts/batch.
+     * Response lists every clientId with its alert id and "created" | "duplicate".
+     * At most MAX_BATCH_SIZE alerts per request (413 above that); the app uploads its
+     * outbox in chunks of that size.
+     */
+    @PostMapping("/sendAlerts")
+    public ResponseEntity<?> sendAlerts(@RequestBody Map<String, Object> payload) {
+        Object raw = payload.get("alerts");
+        if (!(raw instanceof List<?> items)) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", "alerts list required"));
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(413)
+                    .body(Map.of("status", "error", "message", "at most " + MAX_BATCH_SIZE + " alerts per request"));
+        }
+        List<Alert> batch = new ArrayList<>();
+        for (Object item : items) {
+            if (!(item instanceof Map<?, ?> m) || m.get("clientId") == null) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("status", "error", "message", "every alert needs a clientId"));
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> fields = (Map<String, Object>) m;
+            batch.add(toAlert(fields));
+        }
+
+        AlertSyncService.SyncResult result;
+        try {
+            result = alertSyncService.sync(batch, a -> needsEfir(a) ? generateEfirForAlert(a) : null);
+        } catch (DataIntegrityViolationException ex) {
+            // same clientId uploaded concurrently; a retry will see it as a duplicate
+            return ResponseEntity.status(409).body(Map.of("status", "conflict", "message", "retry batch"));
+        }
+        databaseController.publishAlertBatch(result.getCreated(), result.getEfirs());
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Alert a : result.getCreated()) {
+            results.add(Map.of("clientId", a.getClientId(), "alertId", a.getId(), "status", "created"));
+        }
+        result.getDuplicates().forEach((clientId, alertId) ->
+                results.add(Map.of("clientId", clientId, "alertId", alertId, "status", "duplicate")));
+
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("results", results);
+        resp.put("efirs", result.getEfirs());
+        return ResponseEntity.ok(resp);
+    }
+
+    // builds an (unsaved) Alert from a sendAlert-style payload
+    private Alert toAlert(Map<String, Object> payload) {
+        String type = (String) payload.get("type"); // distress | crime | missing
+        String senderUsername = (String) payload.get("senderUsername");
+        String senderTouristId = payload.get("senderTouristId") == null ? null
+                : String.valueOf(payload.get("senderTouristId"));
+        String location = payload.get("location") == null ? "" : String.valueOf(payload.get("location"));
+        String details = payload.get("details") == null ? "" : String.valueOf(payload.get("details"));
+        String dateTimeStr = payload.get("dateTime") == null ? null : String.valueOf(payload.get("dateTime"));
+        String clientId = payload.get("clientId") == null ? null : String.valueOf(payload.get("clientId"));
+
+        LocalDateTime dateTime = LocalDateTime.now();
+        if (dateTimeStr != null) {
+            try {
+                dateTime = LocalDateTime.parse(dateTimeStr);
+            } catch (DateTimeParseException e) {
+                // the app sends Date.toISOString() ("...Z"); keep the phone's time for
+                // alerts that sat in the offline outbox
+                try {
+                    dateTime = LocalDateTime.ofInstant(Instant.parse(dateTimeStr), ZoneId.systemDefault());
+                } catch (DateTimeParseException e2) {
+                    // fallback to now
+                }
+            }
+        }
+
+        Alert alert = new Alert();
+        alert.setType(type);
+        alert.setSenderUsername(senderUsername);
+        alert.setSenderTouristId(senderTouristId);
+        alert.setDateTime(dateTime);
+        alert.setLocation(location);
+        alert.setDetails(details);
+        alert.setClientId(clientId == null || clientId.isBlank() ? null : clientId);
+
+        // missing-specific
+        if ("missing".equalsIgnoreCase(type)) {
+            alert.setMissingName((String) payload.getOrDefault("missingName", ""));
+            alert.setMissingTouristId((String) payload.getOrDefault("missingTouristId", ""));
+            alert.setMissingLastSeen((String) payload.getOrDefault("missingLastSeen", ""));
+        }
+        return alert;
+    }
+
+    private static boolean needsEfir(Alert alert) {
+        return "crime".equalsIgnoreCase(alert.getType()) || "missing".equalsIgnoreCase(alert.getType());
+    }
+
     // NEW: list alerts (optionally filter by username)
     @GetMapping("/alerts")
     public ResponseEntity<List<Alert>> getAlerts(@RequestParam(required = false) String username) {
-        List<Alert> all = databaseController.getAllAlerts();
-        if (username == null || username.isBlank()) return ResponseEntity.ok(all);
-        List<Alert> filtered = new ArrayList<>();
-        for (Alert a : all) {
-            if (username.equals(a.getSenderUsername())) filtered.add(a);
-        }
-        return ResponseEntity.ok(filtered);
+        if (username == null || username.isBlank()) return ResponseEntity.ok(databaseController.getAllAlerts());
+        // includes archived alerts
+        return ResponseEntity.ok(databaseController.getAlertsBySender(username));
     }
 
     // NEW: list efirs (optionally filter by username)
     @GetMapping("/efirs")
     public ResponseEntity<List<Efir>> getEfirs(@RequestParam(required = false) String username) {
-        List<Efir> all = databaseController.getAllEfirs();
-        if (username == null || username.isBlank()) return ResponseEntity.ok(all);
-        List<Efir> filtered = new ArrayList<>();
-        for (Efir e : all) {
-            if (username.equals(e.getSenderUsername())) filtered.add(e);
-        }
-        return ResponseEntity.ok(filtered);
+        if (username == null || username.isBlank()) return ResponseEntity.ok(databaseController.getAllEfirs());
+        // includes archived efirs
+        return ResponseEntity.ok(databaseController.getEfirsBySender(username));
     }
 
     // helper: create a simple E-FIR for given alert
@@ -195,7 +293,7 @@ public class MainController {
                 double bestDist = Double.MAX_VALUE;
                 int bestIdx = 0;
                 for (int i = 0; i < stations.length; i++) {
-                    double d = haversine(lat, lon, stations[i][0], stations[i][1]);
+                    double d = GeoUtils.haversine(lat, lon, stations[i][0], stations[i][1]);
                     if (d < bestDist) { bestDist = d; bestIdx = i; }
                 }
                 station = stationNames[bestIdx];
@@ -212,16 +310,4 @@ public class MainController {
         Efir efir = new Efir(LocalDateTime.now(), station, efirDetails, alert.getId(), alert.getSenderUsername());
         return efir;
     }
-
-    // haversine (km)
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat/2) * Math.sin(dLat/2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon/2) * Math.sin(dLon/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return R * c;
-    }
 }
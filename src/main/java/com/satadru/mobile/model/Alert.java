@@ -37,6 +37,10 @@ public class Alert {
     @Column(name = "missing_last_seen")
     private String missingLastSeen;
 
+    // id generated on the phone; makes offline re-sends idempotent
+    @Column(name = "client_id", unique = true)
+    private String clientId;
+
     public Alert() {
     }
 
@@ -130,4 +134,12 @@ public class Alert {
     public void setMissingLastSeen(String missingLastSeen) {
         this.missingLastSeen = missingLastSeen;
     }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
 }
@@ -1,12 +1,21 @@
 package com.satadru.mobile.repository;
 
 import com.satadru.mobile.model.Alert;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AlertRepository extends JpaRepository<Alert, Long> {
     List<Alert> findBySenderUsername(String username);
+    List<Alert> findByDateTimeBeforeOrderByIdAsc(LocalDateTime cutoff, Pageable pageable);
+    Optional<Alert> findTopByOrderByIdDesc();
+    List<Alert> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    List<Alert> findByDateTimeBetween(LocalDateTime from, LocalDateTime to);
+    List<Alert> findByClientIdIn(Collection<String> clientIds);
 }
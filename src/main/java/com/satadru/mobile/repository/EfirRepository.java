@@ -1,12 +1,19 @@
 package com.satadru.mobile.repository;
 
 import com.satadru.mobile.model.Efir;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface EfirRepository extends JpaRepository<Efir, Long> {
     List<Efir> findBySenderUsername(String username);
+    List<Efir> findByDateTimeBeforeOrderByIdAsc(LocalDateTime cutoff, Pageable pageable);
+    Optional<Efir> findTopByOrderByIdDesc();
+    List<Efir> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    List<Efir> findByDateTimeBetween(LocalDateTime from, LocalDateTime to);
 }
@@ -0,0 +1,146 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import com.satadru.mobile.repository.AlertRepository;
+import com.satadru.mobile.repository.EfirRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Idempotent upload of alerts queued on the phone while it was offline.
+ *
+ * Every queued alert carries a client-generated id (Alert.clientId, unique in the
+ * alerts table). Known ids are answered from a bounded in-memory map first, then
+ * from the table and finally from the archive segments (which keep a clientId -> id
+ * map per segment), so a reconnecting phone that re-sends its whole
+ * outbox costs one indexed lookup and no inserts. New alerts and their
+ * auto-generated E-FIRs go in with a single transaction; /sendAlert uses the same path
+ * for one alert so an alert is never stored without its E-FIR. The unique column stays
+ * the final guard if two uploads of the same id race.
+ */
+@Service
+public class AlertSyncService {
+
+    private static final int MAX_REMEMBERED_IDS = 100_000;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private EfirRepository efirRepository;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // clientId -> alert id, least recently used evicted first
+    private final Map<String, Long> knownClientIds = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_REMEMBERED_IDS;
+                }
+            });
+
+    public AlertSyncService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // id of the alert already stored for this clientId, if any
+    public Optional<Long> findExisting(String clientId) {
+        if (clientId == null || clientId.isBlank()) return Optional.empty();
+        return Optional.ofNullable(lookup(List.of(clientId)).get(clientId));
+    }
+
+    /**
+     * Store the alerts whose clientId hasn't been seen yet.
+     *
+     * @param batch   alerts to store; repeats of a clientId within the batch are dropped,
+     *                alerts without one (older app versions) are always stored
+     * @param efirFor builds the E-FIR for a saved alert, or returns null when none is needed
+     */
+    public SyncResult sync(List<Alert> batch, Function<Alert, Efir> efirFor) {
+        Map<String, Alert> unique = new LinkedHashMap<>();
+        List<Alert> fresh = new ArrayList<>();
+        for (Alert a : batch) {
+            if (a.getClientId() == null) fresh.add(a);
+            else unique.putIfAbsent(a.getClientId(), a);
+        }
+
+        Map<String, Long> existing = lookup(unique.keySet());
+        for (Alert a : unique.values()) {
+            if (!existing.containsKey(a.getClientId())) fresh.add(a);
+        }
+
+        SyncResult result = new SyncResult();
+        result.duplicates.putAll(existing);
+        if (fresh.isEmpty()) return result;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Alert> saved = alertRepository.saveAll(fresh);
+            List<Efir> efirs = new ArrayList<>();
+            for (Alert a : saved) {
+                Efir e = efirFor.apply(a);
+                if (e != null) efirs.add(e);
+            }
+            result.created.addAll(saved);
+            result.efirs.addAll(efirRepository.saveAll(efirs));
+        });
+
+        // only remember ids once the insert has committed
+        for (Alert a : result.created) {
+            if (a.getClientId() != null) knownClientIds.put(a.getClientId(), a.getId());
+        }
+        return result;
+    }
+
+    private Map<String, Long> lookup(Collection<String> clientIds) {
+        Map<String, Long> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String id : clientIds) {
+            Long alertId = knownClientIds.get(id);
+            if (alertId != null) found.put(id, alertId);
+            else misses.add(id);
+        }
+        if (misses.isEmpty()) return found;
+
+        for (Alert a : alertRepository.findByClientIdIn(misses)) {
+            found.put(a.getClientId(), a.getId());
+            knownClientIds.put(a.getClientId(), a.getId());
+        }
+        misses.removeAll(found.keySet());
+        if (!misses.isEmpty()) {
+            // an old outbox can outlive the table copy once the alert is archived
+            Map<String, Long> archived = archiveService.findAlertIdsByClientId(misses);
+            found.putAll(archived);
+            knownClientIds.putAll(archived);
+        }
+        return found;
+    }
+
+    public static class SyncResult {
+        private final List<Alert> created = new ArrayList<>();
+        private final List<Efir> efirs = new ArrayList<>();
+        private final Map<String, Long> duplicates = new LinkedHashMap<>();
+
+        public List<Alert> getCreated() {
+            return created;
+        }
+
+        public List<Efir> getEfirs() {
+            return efirs;
+        }
+
+        // clientId -> id of the alert stored earlier
+        public Map<String, Long> getDuplicates() {
+            return duplicates;
+        }
+    }
+}
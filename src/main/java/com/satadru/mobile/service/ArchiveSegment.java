@@ -0,0 +1,275 @@
+package com.satadru.mobile.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * One immutable, memory-mapped archive file of alerts or E-FIRs.
+ *
+ * Layout: int magic, then records sorted by id. Each record is
+ * [int length][long id][long epochSecond][int nano][string sender][string clientId][codec body],
+ * strings being [int byteLength (-1 = null)][UTF-8 bytes].
+ *
+ * The file is written once (temp file + atomic move) and never modified. On open it
+ * is scanned once to build a sparse id index (every SPARSE_STEP-th record), the
+ * id/date range, the set of senders and the clientId -> id map, so lookups only touch
+ * the few records they need.
+ * Records aren't date-ordered, so date queries prune whole segments by their
+ * min/max date and then read only record headers.
+ */
+class ArchiveSegment<T> {
+
+    private static final int MAGIC = 0x41524331; // "ARC1"
+    private static final int SPARSE_STEP = 64;
+
+    // reads/writes the entity-specific fields after the common header
+    interface Codec<T> {
+        long id(T row);
+
+        LocalDateTime dateTime(T row);
+
+        String sender(T row);
+
+        // idempotency key sent by the app, or null
+        String clientId(T row);
+
+        void writeBody(DataOutputStream out, T row) throws IOException;
+
+        T readBody(ByteBuffer in, long id, LocalDateTime dateTime, String sender, String clientId);
+    }
+
+    private final Path path;
+    private final Codec<T> codec;
+    private final MappedByteBuffer buffer;
+
+    private int count;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+    private LocalDateTime minDate;
+    private LocalDateTime maxDate;
+    private final Set<String> senders = new HashSet<>();
+    private final Map<String, Long> clientIds = new HashMap<>();
+    private long[] sparseIds = new long[0];
+    private int[] sparseOffsets = new int[0];
+
+    private ArchiveSegment(Path path, Codec<T> codec, MappedByteBuffer buffer) {
+        this.path = path;
+        this.codec = codec;
+        this.buffer = buffer;
+    }
+
+    // write rows (sorted by id here) into a new segment file and open it
+    static <T> ArchiveSegment<T> write(Path path, List<T> rows, Codec<T> codec) throws IOException {
+        List<T> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingLong(codec::id));
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            for (T row : sorted) {
+                recordBytes.reset();
+                record.writeLong(codec.id(row));
+                writeDateTime(record, codec.dateTime(row));
+                writeString(record, codec.sender(row));
+                writeString(record, codec.clientId(row));
+                codec.writeBody(record, row);
+                record.flush();
+                out.writeInt(recordBytes.size());
+                recordBytes.writeTo(out);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path, codec);
+    }
+
+    static <T> ArchiveSegment<T> open(Path path, Codec<T> codec) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buffer.limit() < 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        ArchiveSegment<T> segment = new ArchiveSegment<>(path, codec, buffer);
+        segment.scan();
+        return segment;
+    }
+
+    // one pass over the headers to build the sparse index and segment metadata
+    private void scan() {
+        List<Long> ids = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        ByteBuffer in = buffer.duplicate();
+        in.position(4);
+        while (in.remaining() >= 4) {
+            int offset = in.position();
+            int length = in.getInt();
+            long id = in.getLong();
+            LocalDateTime dt = readDateTime(in);
+            String sender = readString(in);
+            String clientId = readString(in);
+
+            if (count % SPARSE_STEP == 0) {
+                ids.add(id);
+                offsets.add(offset);
+            }
+            count++;
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+            if (dt != null) {
+                if (minDate == null || dt.isBefore(minDate)) minDate = dt;
+                if (maxDate == null || dt.isAfter(maxDate)) maxDate = dt;
+            }
+            if (sender != null) senders.add(sender);
+            if (clientId != null) clientIds.put(clientId, id);
+            in.position(offset + 4 + length);
+        }
+        sparseIds = ids.stream().mapToLong(Long::longValue).toArray();
+        sparseOffsets = offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    Optional<T> findById(long id) {
+        if (count == 0 || id < minId || id > maxId) return Optional.empty();
+        int slot = Arrays.binarySearch(sparseIds, id);
+        if (slot < 0) slot = -slot - 2; // last sparse entry below id
+        ByteBuffer in = buffer.duplicate();
+        in.position(sparseOffsets[Math.max(slot, 0)]);
+        for (int i = 0; i < SPARSE_STEP && in.remaining() >= 4; i++) {
+            int offset = in.position();
+            int length = in.getInt();
+            long recordId = in.getLong();
+            if (recordId == id) {
+                return Optional.of(readRecord(offset));
+            }
+            if (recordId > id) break;
+            in.position(offset + 4 + length);
+        }
+        return Optional.empty();
+    }
+
+    // id of the record stored with this clientId
+    Optional<Long> findIdByClientId(String clientId) {
+        return Optional.ofNullable(clientId == null ? null : clientIds.get(clientId));
+    }
+
+    List<T> findBySender(String sender) {
+        List<T> out = new ArrayList<>();
+        if (sender == null || !senders.contains(sender)) return out;
+        forEach(row -> {
+            if (sender.equals(codec.sender(row))) out.add(row);
+        });
+        return out;
+    }
+
+    // records dated within [from, to]; only headers are read for records outside the range
+    List<T> findBetween(LocalDateTime from, LocalDateTime to) {
+        List<T> out = new ArrayList<>();
+        if (count == 0 || minDate == null) return out;
+        if ((to != null && minDate.isAfter(to)) || (from != null && maxDate.isBefore(from))) return out;
+        ByteBuffer in = buffer.duplicate();
+        in.position(4);
+        while (in.remaining() >= 4) {
+            int offset = in.position();
+            int length = in.getInt();
+            in.getLong(); // id
+            LocalDateTime dt = readDateTime(in);
+            if (dt != null && (from == null || !dt.isBefore(from)) && (to == null || !dt.isAfter(to))) {
+                out.add(readRecord(offset));
+            }
+            in.position(offset + 4 + length);
+        }
+        return out;
+    }
+
+    void forEach(Consumer<T> action) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(4);
+        while (in.remaining() >= 4) {
+            int offset = in.position();
+            int length = in.getInt();
+            action.accept(readRecord(offset));
+            in.position(offset + 4 + length);
+        }
+    }
+
+    private T readRecord(int offset) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + 4);
+        long id = in.getLong();
+        LocalDateTime dt = readDateTime(in);
+        String sender = readString(in);
+        String clientId = readString(in);
+        return codec.readBody(in, id, dt, sender, clientId);
+    }
+
+    Path getPath() { return path; }
+    int getCount() { return count; }
+    long getMinId() { return minId; }
+    long getMaxId() { return maxId; }
+    LocalDateTime getMinDate() { return minDate; }
+    LocalDateTime getMaxDate() { return maxDate; }
+
+    // --- field helpers shared with the codecs ---
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDateTime(DataOutputStream out, LocalDateTime dt) throws IOException {
+        if (dt == null) {
+            out.writeLong(Long.MIN_VALUE);
+            out.writeInt(0);
+            return;
+        }
+        out.writeLong(dt.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dt.getNano());
+    }
+
+    static LocalDateTime readDateTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nano = in.getInt();
+        if (seconds == Long.MIN_VALUE) return null;
+        return LocalDateTime.ofEpochSecond(seconds, nano, ZoneOffset.UTC);
+    }
+
+    static void writeLong(DataOutputStream out, Long v) throws IOException {
+        out.writeBoolean(v != null);
+        out.writeLong(v == null ? 0L : v);
+    }
+
+    static Long readLong(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        long v = in.getLong();
+        return present ? v : null;
+    }
+}
@@ -0,0 +1,339 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import com.satadru.mobile.repository.AlertRepository;
+import com.satadru.mobile.repository.EfirRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cold tier for alerts and E-FIRs.
+ *
+ * A nightly job (archive.cron) moves rows older than archive.older-than-days out of
+ * MySQL into append-only segment files under archive.dir, one segment per batch.
+ * The segment is fully written and synced before the rows are deleted, so a crash
+ * can at worst leave a row in both tiers; readers prefer the DB copy and de-duplicate
+ * by id, and the next run deletes such rows without archiving them a second time.
+ * Existing segments are memory-mapped at startup.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    private static final String ALERT_PREFIX = "alerts-";
+    private static final String EFIR_PREFIX = "efirs-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private EfirRepository efirRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${archive.dir:archive}")
+    private String archiveDir;
+
+    @Value("${archive.older-than-days:90}")
+    private int olderThanDays;
+
+    @Value("${archive.batch-size:5000}")
+    private int batchSize;
+
+    private final List<ArchiveSegment<Alert>> alertSegments = new CopyOnWriteArrayList<>();
+    private final List<ArchiveSegment<Efir>> efirSegments = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void load() throws IOException {
+        Path dir = Paths.get(archiveDir);
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) files.add(p);
+        }
+        Collections.sort(files);
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            try {
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(p); // left over from an interrupted archive run
+                } else if (name.startsWith(ALERT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    alertSegments.add(ArchiveSegment.open(p, ALERT_CODEC));
+                } else if (name.startsWith(EFIR_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    efirSegments.add(ArchiveSegment.open(p, EFIR_CODEC));
+                }
+            } catch (IOException e) {
+                log.error("Skipping unreadable archive segment {}", p, e);
+            }
+        }
+    }
+
+    // Move old alerts and efirs to segment files; returns how many rows moved per kind
+    @Scheduled(cron = "${archive.cron:0 30 3 * * *}")
+    public synchronized Map<String, Integer> archiveOldRecords() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(olderThanDays);
+        Map<String, Integer> moved = new LinkedHashMap<>();
+        moved.put("alerts", archiveAlerts(cutoff));
+        moved.put("efirs", archiveEfirs(cutoff));
+        log.info("Archived records older than {}: {}", cutoff, moved);
+        return moved;
+    }
+
+    private int archiveAlerts(LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            List<Alert> batch = alertRepository.findByDateTimeBeforeOrderByIdAsc(cutoff, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) return total;
+            try {
+                // rows left behind by a run whose delete failed are already archived
+                long archivedMax = maxAlertId();
+                List<Alert> toWrite = new ArrayList<>();
+                for (Alert row : batch) {
+                    if (row.getId() > archivedMax || findAlert(row.getId()).isEmpty()) toWrite.add(row);
+                }
+                if (!toWrite.isEmpty()) {
+                    alertSegments.add(ArchiveSegment.write(segmentPath(ALERT_PREFIX, toWrite.get(0).getId()), toWrite, ALERT_CODEC));
+                }
+                alertRepository.deleteAllByIdInBatch(ids(batch, Alert::getId));
+            } catch (Exception e) {
+                log.error("Alert archival stopped after {} rows", total, e);
+                return total;
+            }
+            total += batch.size();
+        }
+    }
+
+    private int archiveEfirs(LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            List<Efir> batch = efirRepository.findByDateTimeBeforeOrderByIdAsc(cutoff, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) return total;
+            try {
+                // rows left behind by a run whose delete failed are already archived
+                long archivedMax = maxEfirId();
+                List<Efir> toWrite = new ArrayList<>();
+                for (Efir row : batch) {
+                    if (row.getId() > archivedMax || findEfir(row.getId()).isEmpty()) toWrite.add(row);
+                }
+                if (!toWrite.isEmpty()) {
+                    efirSegments.add(ArchiveSegment.write(segmentPath(EFIR_PREFIX, toWrite.get(0).getId()), toWrite, EFIR_CODEC));
+                }
+                efirRepository.deleteAllByIdInBatch(ids(batch, Efir::getId));
+                eventPublisher.publishEvent(new EfirsArchived(batch));
+            } catch (Exception e) {
+                log.error("E-FIR archival stopped after {} rows", total, e);
+                return total;
+            }
+            total += batch.size();
+        }
+    }
+
+    // --- read path ---
+
+    public Optional<Alert> findAlert(long id) {
+        for (ArchiveSegment<Alert> s : alertSegments) {
+            Optional<Alert> found = s.findById(id);
+            if (found.isPresent()) return found;
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Efir> findEfir(long id) {
+        for (ArchiveSegment<Efir> s : efirSegments) {
+            Optional<Efir> found = s.findById(id);
+            if (found.isPresent()) return found;
+        }
+        return Optional.empty();
+    }
+
+    // clientId -> alert id for the given clientIds that were archived
+    public Map<String, Long> findAlertIdsByClientId(Collection<String> clientIds) {
+        Map<String, Long> found = new HashMap<>();
+        for (String clientId : clientIds) {
+            for (ArchiveSegment<Alert> s : alertSegments) {
+                Optional<Long> id = s.findIdByClientId(clientId);
+                if (id.isPresent()) {
+                    found.put(clientId, id.get());
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    // highest archived id (0 when nothing is archived); anything above it is table-only
+    public long maxAlertId() {
+        long max = 0;
+        for (ArchiveSegment<Alert> s : alertSegments) max = Math.max(max, s.getMaxId());
+        return max;
+    }
+
+    public long maxEfirId() {
+        long max = 0;
+        for (ArchiveSegment<Efir> s : efirSegments) max = Math.max(max, s.getMaxId());
+        return max;
+    }
+
+    public List<Alert> findAlertsBySender(String username) {
+        List<Alert> out = new ArrayList<>();
+        for (ArchiveSegment<Alert> s : alertSegments) out.addAll(s.findBySender(username));
+        return out;
+    }
+
+    public List<Efir> findEfirsBySender(String username) {
+        List<Efir> out = new ArrayList<>();
+        for (ArchiveSegment<Efir> s : efirSegments) out.addAll(s.findBySender(username));
+        return out;
+    }
+
+    // alerts dated within [from, to] (either bound may be null); segments outside the range are skipped
+    public List<Alert> findAlertsBetween(LocalDateTime from, LocalDateTime to) {
+        List<Alert> out = new ArrayList<>();
+        for (ArchiveSegment<Alert> s : alertSegments) out.addAll(s.findBetween(from, to));
+        return out;
+    }
+
+    public List<Efir> findEfirsBetween(LocalDateTime from, LocalDateTime to) {
+        List<Efir> out = new ArrayList<>();
+        for (ArchiveSegment<Efir> s : efirSegments) out.addAll(s.findBetween(from, to));
+        return out;
+    }
+
+    public void forEachAlert(Consumer<Alert> action) {
+        for (ArchiveSegment<Alert> s : alertSegments) s.forEach(action);
+    }
+
+    public void forEachEfir(Consumer<Efir> action) {
+        for (ArchiveSegment<Efir> s : efirSegments) s.forEach(action);
+    }
+
+    // per-segment metadata (file, row count, id and date range)
+    public List<Map<String, Object>> segments() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (ArchiveSegment<Alert> s : alertSegments) out.add(describe("alert", s));
+        for (ArchiveSegment<Efir> s : efirSegments) out.add(describe("efir", s));
+        return out;
+    }
+
+    private static Map<String, Object> describe(String kind, ArchiveSegment<?> s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("kind", kind);
+        m.put("file", s.getPath().getFileName().toString());
+        m.put("count", s.getCount());
+        m.put("minId", s.getMinId());
+        m.put("maxId", s.getMaxId());
+        m.put("minDate", s.getMinDate());
+        m.put("maxDate", s.getMaxDate());
+        return m;
+    }
+
+    private Path segmentPath(String prefix, Long firstId) {
+        return Paths.get(archiveDir, prefix + System.currentTimeMillis() + "-" + firstId + SEGMENT_SUFFIX);
+    }
+
+    private static <T> List<Long> ids(List<T> rows, Function<T, Long> idOf) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (T row : rows) ids.add(idOf.apply(row));
+        return ids;
+    }
+
+    // published after a batch of E-FIRs left the table (they count as closed from then on)
+    public static class EfirsArchived {
+        private final List<Efir> efirs;
+
+        public EfirsArchived(List<Efir> efirs) {
+            this.efirs = efirs;
+        }
+
+        public List<Efir> getEfirs() {
+            return efirs;
+        }
+    }
+
+    // --- codecs: fields after the common id/date/sender header ---
+
+    static final ArchiveSegment.Codec<Alert> ALERT_CODEC = new ArchiveSegment.Codec<>() {
+        @Override public long id(Alert a) { return a.getId(); }
+        @Override public LocalDateTime dateTime(Alert a) { return a.getDateTime(); }
+        @Override public String sender(Alert a) { return a.getSenderUsername(); }
+        @Override public String clientId(Alert a) { return a.getClientId(); }
+
+        @Override
+        public void writeBody(DataOutputStream out, Alert a) throws IOException {
+            ArchiveSegment.writeString(out, a.getType());
+            ArchiveSegment.writeString(out, a.getSenderTouristId());
+            ArchiveSegment.writeString(out, a.getLocation());
+            ArchiveSegment.writeString(out, a.getDetails());
+            ArchiveSegment.writeString(out, a.getMissingName());
+            ArchiveSegment.writeString(out, a.getMissingTouristId());
+            ArchiveSegment.writeString(out, a.getMissingLastSeen());
+        }
+
+        @Override
+        public Alert readBody(ByteBuffer in, long id, LocalDateTime dateTime, String sender, String clientId) {
+            Alert a = new Alert();
+            a.setId(id);
+            a.setDateTime(dateTime);
+            a.setSenderUsername(sender);
+            a.setClientId(clientId);
+            a.setType(ArchiveSegment.readString(in));
+            a.setSenderTouristId(ArchiveSegment.readString(in));
+            a.setLocation(ArchiveSegment.readString(in));
+            a.setDetails(ArchiveSegment.readString(in));
+            a.setMissingName(ArchiveSegment.readString(in));
+            a.setMissingTouristId(ArchiveSegment.readString(in));
+            a.setMissingLastSeen(ArchiveSegment.readString(in));
+            return a;
+        }
+    };
+
+    static final ArchiveSegment.Codec<Efir> EFIR_CODEC = new ArchiveSegment.Codec<>() {
+        @Override public long id(Efir e) { return e.getId(); }
+        @Override public LocalDateTime dateTime(Efir e) { return e.getDateTime(); }
+        @Override public String sender(Efir e) { return e.getSenderUsername(); }
+        @Override public String clientId(Efir e) { return null; }
+
+        @Override
+        public void writeBody(DataOutputStream out, Efir e) throws IOException {
+            ArchiveSegment.writeString(out, e.getStation());
+            ArchiveSegment.writeString(out, e.getDetails());
+            ArchiveSegment.writeLong(out, e.getAlertId());
+        }
+
+        @Override
+        public Efir readBody(ByteBuffer in, long id, LocalDateTime dateTime, String sender, String clientId) {
+            Efir e = new Efir();
+            e.setId(id);
+            e.setDateTime(dateTime);
+            e.setSenderUsername(sender);
+            e.setStation(ArchiveSegment.readString(in));
+            e.setDetails(ArchiveSegment.readString(in));
+            e.setAlertId(ArchiveSegment.readLong(in));
+            return e;
+        }
+    };
+}
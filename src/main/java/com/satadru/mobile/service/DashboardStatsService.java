@@ -0,0 +1,252 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import com.satadru.mobile.repository.AlertRepository;
+import com.satadru.mobile.repository.EfirRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling dashboard counters for alerts and E-FIRs.
+ *
+ * Keeps running totals per alert type, the number of open E-FIRs per station (rows
+ * still in the efir table; archiving closes them) and hourly buckets for the last
+ * stats.retention-hours hours. A write is a couple of map lookups and increments
+ * under a short lock, so dashboards can poll /api/tourists/stats (or listen on
+ * /topic/stats) without anyone pulling the full alert / E-FIR lists.
+ * The counters are rebuilt from the archive segments and the tables once the app is up.
+ */
+@Service
+public class DashboardStatsService {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final String UNKNOWN = "unknown";
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private EfirRepository efirRepository;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Value("${stats.retention-hours:168}")
+    private int retentionHours;
+
+    // guards the counters while a rebuild is running and the swap at its end
+    private final Object lock = new Object();
+
+    private volatile Counters counters = new Counters();
+
+    // set only while a rebuild is running:
+    // the counters being filled, writes that arrived meanwhile, E-FIRs archived meanwhile,
+    // and the highest E-FIR id the scan has counted so far
+    private Counters rebuilding;
+    private List<Object> pendingDuringRebuild;
+    private Set<Long> archivedDuringRebuild;
+    private long scannedEfirId;
+
+    /**
+     * Recount everything into fresh maps and swap them in when done.
+     * The tables are read in id order up to the max id seen at the start; anything
+     * written while the scan runs is buffered and replayed only if its id is above
+     * that mark, so a write is counted once and the live counters are never cleared
+     * mid-way. E-FIRs archived during the scan are closed in the fresh counters too.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Counters fresh = new Counters();
+        synchronized (lock) {
+            if (rebuilding != null) return; // one rebuild at a time
+            rebuilding = fresh;
+            pendingDuringRebuild = new ArrayList<>();
+            archivedDuringRebuild = new HashSet<>();
+            scannedEfirId = 0;
+        }
+        try {
+            long maxAlertId = alertRepository.findTopByOrderByIdDesc().map(Alert::getId).orElse(0L);
+            long maxEfirId = efirRepository.findTopByOrderByIdDesc().map(Efir::getId).orElse(0L);
+
+            // archived rows first: they count toward totals and buckets, but are closed
+            archiveService.forEachAlert(fresh::recordAlert);
+            archiveService.forEachEfir(fresh::recordEfir);
+
+            // only ids at or below the archive's max can be in both tiers
+            long archivedAlertMax = archiveService.maxAlertId();
+            long archivedEfirMax = archiveService.maxEfirId();
+
+            long lastId = 0;
+            while (lastId < maxAlertId) {
+                List<Alert> alerts = alertRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                if (alerts.isEmpty()) break;
+                for (Alert a : alerts) {
+                    // skip rows still in the table after an interrupted archive run
+                    if (a.getId() <= maxAlertId
+                            && (a.getId() > archivedAlertMax || archiveService.findAlert(a.getId()).isEmpty())) {
+                        fresh.recordAlert(a);
+                    }
+                    lastId = a.getId();
+                }
+            }
+
+            lastId = 0;
+            while (lastId < maxEfirId) {
+                List<Efir> efirs = efirRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                if (efirs.isEmpty()) break;
+                synchronized (lock) {
+                    for (Efir e : efirs) {
+                        lastId = e.getId();
+                        if (e.getId() > maxEfirId || archivedDuringRebuild.contains(e.getId())) continue;
+                        // a row that is also in a segment is already in the buckets, but still open
+                        if (e.getId() > archivedEfirMax || archiveService.findEfir(e.getId()).isEmpty()) fresh.recordEfir(e);
+                        fresh.openEfir(e);
+                    }
+                    scannedEfirId = lastId;
+                }
+            }
+
+            synchronized (lock) {
+                for (Object o : pendingDuringRebuild) {
+                    if (o instanceof Alert a && a.getId() > maxAlertId) fresh.recordAlert(a);
+                    if (o instanceof Efir e && e.getId() > maxEfirId) {
+                        fresh.recordEfir(e);
+                        fresh.openEfir(e);
+                    }
+                }
+                counters = fresh;
+            }
+        } finally {
+            synchronized (lock) {
+                rebuilding = null;
+                pendingDuringRebuild = null;
+                archivedDuringRebuild = null;
+            }
+        }
+    }
+
+    public void recordAlert(Alert a) {
+        synchronized (lock) {
+            if (pendingDuringRebuild != null) pendingDuringRebuild.add(a);
+            counters.recordAlert(a);
+        }
+    }
+
+    public void recordEfir(Efir e) {
+        synchronized (lock) {
+            if (pendingDuringRebuild != null) pendingDuringRebuild.add(e);
+            counters.recordEfir(e);
+            counters.openEfir(e);
+        }
+    }
+
+    // archived E-FIRs are closed: they leave the per-station open count
+    @EventListener
+    public void onEfirsArchived(ArchiveService.EfirsArchived event) {
+        synchronized (lock) {
+            for (Efir e : event.getEfirs()) {
+                counters.closeEfir(e);
+                if (rebuilding != null) {
+                    archivedDuringRebuild.add(e.getId());
+                    if (e.getId() <= scannedEfirId) rebuilding.closeEfir(e); // the scan already counted it
+                }
+            }
+        }
+    }
+
+    /**
+     * Current counters. "alertsByHour"/"efirsByHour" hold the last {@code hours} hourly
+     * buckets (capped at the retention window), oldest first.
+     */
+    public Map<String, Object> snapshot(int hours) {
+        int window = Math.max(1, Math.min(hours, retentionHours));
+        LocalDateTime since = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(window - 1L);
+        Counters c = counters;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generatedAt", LocalDateTime.now());
+        stats.put("alertsByType", toCounts(c.alertsByType));
+        stats.put("efirsByStation", toCounts(c.efirsByStation));
+        stats.put("alertsByHour", toBuckets(c.alertsByHour.tailMap(since, true)));
+        stats.put("efirsByHour", toBuckets(c.efirsByHour.tailMap(since, true)));
+        return stats;
+    }
+
+    // one full set of counters; rebuild fills a new one and swaps it in
+    private class Counters {
+        final Map<String, LongAdder> alertsByType = new ConcurrentHashMap<>();
+        final Map<String, LongAdder> efirsByStation = new ConcurrentHashMap<>();
+
+        // hour bucket -> (type | station) -> count
+        final ConcurrentSkipListMap<LocalDateTime, Map<String, LongAdder>> alertsByHour = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<LocalDateTime, Map<String, LongAdder>> efirsByHour = new ConcurrentSkipListMap<>();
+
+        void recordAlert(Alert a) {
+            String type = a.getType() == null || a.getType().isBlank() ? UNKNOWN : a.getType().toLowerCase();
+            increment(alertsByType, type);
+            incrementBucket(alertsByHour, a.getDateTime(), type);
+        }
+
+        void recordEfir(Efir e) {
+            incrementBucket(efirsByHour, e.getDateTime(), station(e));
+        }
+
+        void openEfir(Efir e) {
+            increment(efirsByStation, station(e));
+        }
+
+        void closeEfir(Efir e) {
+            efirsByStation.computeIfPresent(station(e), (k, count) -> {
+                count.decrement();
+                return count.sum() > 0 ? count : null;
+            });
+        }
+    }
+
+    private static String station(Efir e) {
+        return e.getStation() == null || e.getStation().isBlank() ? UNKNOWN : e.getStation();
+    }
+
+    private static void increment(Map<String, LongAdder> counts, String key) {
+        counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private void incrementBucket(ConcurrentSkipListMap<LocalDateTime, Map<String, LongAdder>> buckets,
+                                 LocalDateTime dateTime, String key) {
+        LocalDateTime hour = (dateTime == null ? LocalDateTime.now() : dateTime).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime cutoff = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(retentionHours);
+        if (hour.isBefore(cutoff)) return;
+        increment(buckets.computeIfAbsent(hour, h -> new ConcurrentHashMap<>()), key);
+        // drop buckets that fell out of the window (usually none, at most one per hour)
+        buckets.headMap(cutoff).clear();
+    }
+
+    private static Map<String, Long> toCounts(Map<String, LongAdder> counts) {
+        Map<String, Long> out = new TreeMap<>();
+        counts.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    private static List<Map<String, Object>> toBuckets(Map<LocalDateTime, Map<String, LongAdder>> buckets) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        buckets.forEach((hour, counts) -> {
+            Map<String, Object> b = new LinkedHashMap<>();
+            b.put("hour", hour);
+            b.put("counts", toCounts(counts));
+            out.add(b);
+        });
+        return out;
+    }
+}
@@ -0,0 +1,302 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Tourist;
+import com.satadru.mobile.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Works out how often each tourist's app should report its location.
+ *
+ * The recommendation returned from PUT /api/tourists/{id}/location depends on:
+ * - speed since the previous fix (standing still reports rarely, moving reports often)
+ * - priority: the tourist raised an alert recently, or is near an active alert
+ * - ingest load: location updates to be stored per second versus
+ *   location.ingest.capacity-per-second (jitter the movement filter drops doesn't count)
+ *
+ * Above capacity the interval is stretched for non-priority tourists, in proportion
+ * to the offered rate. Fixes are admitted through a token bucket refilled at the
+ * capacity, so under steady overload about capacity-per-second fixes still go through
+ * and only the overflow is shed (429 + the recommendation) rather than queued.
+ * Priority fixes are never shed. Shed fixes don't take tokens, so refusing them
+ * can't keep the service in the shedding state.
+ *
+ * Active alerts are indexed by sender and by a coarse lat/lon grid, so the priority
+ * check on each fix only measures distances to alerts in the neighbouring cells.
+ */
+@Service
+public class LocationCadenceService {
+
+    private static final long PRIORITY_INTERVAL_MS = 2000;
+    private static final long MOVING_INTERVAL_MS = 5000;
+    private static final long WALKING_INTERVAL_MS = 10000;
+    private static final long STATIONARY_INTERVAL_MS = 30000;
+    private static final long MAX_INTERVAL_MS = 120000;
+
+    private static final double WALKING_SPEED_MPS = 0.5;
+    private static final double MOVING_SPEED_MPS = 2.5;
+    private static final double PRIORITY_RADIUS_KM = 0.5;
+    private static final long ACTIVE_ALERT_MS = 120 * 60 * 1000L;
+    // grid cell size; a cell is ~1.1 km tall, more than PRIORITY_RADIUS_KM
+    private static final double CELL_DEG = 0.01;
+    private static final double KM_PER_DEG = 111.32;
+
+    @Value("${location.ingest.capacity-per-second:200}")
+    private int capacityPerSecond;
+
+    private final LongSupplier clock;
+
+    // tourist DB id -> previous fix
+    private final Map<Long, Fix> lastFix = new ConcurrentHashMap<>();
+
+    // username -> time (clock ms) of that user's latest active alert
+    private final Map<String, Long> alertSenders = new ConcurrentHashMap<>();
+
+    // grid cell -> active alerts with a location in that cell
+    private final Map<Long, Queue<ActiveAlert>> alertCells = new ConcurrentHashMap<>();
+
+    // every active alert in arrival order, so expiry only pops the head
+    private final Queue<ActiveAlert> expiryQueue = new ConcurrentLinkedQueue<>();
+
+    // offered fixes per second, shed ones included (drives interval stretching)
+    private long currentSecond;
+    private int currentCount;
+    private int previousCount;
+
+    // admission bucket: refills at capacityPerSecond, holds at most one second's worth
+    private double tokens = -1;
+    private long lastRefillMs;
+
+    public LocationCadenceService() {
+        this.clock = System::currentTimeMillis;
+    }
+
+    LocationCadenceService(int capacityPerSecond, LongSupplier clock) {
+        this.capacityPerSecond = capacityPerSecond;
+        this.clock = clock;
+    }
+
+    public void recordAlert(Alert a) {
+        long now = clock.getAsLong();
+        long at = a.getDateTime() == null ? now : toMillis(a.getDateTime());
+        if (at < now - ACTIVE_ALERT_MS) return; // back-dated past the active window
+        double[] ll = GeoUtils.parseLatLon(a.getLocation());
+        ActiveAlert active = new ActiveAlert(a.getSenderUsername(), ll, at);
+        if (active.senderUsername != null) alertSenders.merge(active.senderUsername, at, Math::max);
+        if (ll != null) {
+            alertCells.compute(cellKey(ll[0], ll[1]), (k, q) -> {
+                if (q == null) q = new ConcurrentLinkedQueue<>();
+                q.add(active);
+                return q;
+            });
+        }
+        expiryQueue.add(active);
+    }
+
+    /**
+     * Register one location fix and return the cadence the app should use next.
+     *
+     * @param store whether the caller wants to persist this fix; only those count as
+     *              load and go through admission (the others are never shed)
+     */
+    public Cadence onFix(Tourist t, Double latitude, Double longitude, boolean store) {
+        long now = clock.getAsLong();
+        double load = (store ? offeredRate(now) : currentRate(now)) / Math.max(1, capacityPerSecond);
+
+        double speed = 0;
+        if (latitude != null && longitude != null) {
+            Fix prev = lastFix.put(t.getId(), new Fix(latitude, longitude, now));
+            if (prev != null && now > prev.at) {
+                double meters = GeoUtils.haversine(prev.lat, prev.lon, latitude, longitude) * 1000;
+                speed = meters / ((now - prev.at) / 1000.0);
+            }
+        }
+
+        if (isPriority(t.getUsername(), latitude, longitude, now)) {
+            if (store) admit(now, true);
+            return new Cadence(PRIORITY_INTERVAL_MS, 5, false);
+        }
+
+        long interval;
+        int distance;
+        if (speed >= MOVING_SPEED_MPS) {
+            interval = MOVING_INTERVAL_MS;
+            distance = 30;
+        } else if (speed >= WALKING_SPEED_MPS) {
+            interval = WALKING_INTERVAL_MS;
+            distance = 10;
+        } else {
+            interval = STATIONARY_INTERVAL_MS;
+            distance = 20;
+        }
+        if (load > 1) {
+            interval = Math.min(MAX_INTERVAL_MS, (long) (interval * load));
+            distance = (int) Math.min(500, distance * load);
+        }
+        return new Cadence(interval, distance, store && !admit(now, false));
+    }
+
+    private boolean isPriority(String username, Double latitude, Double longitude, long now) {
+        long cutoff = now - ACTIVE_ALERT_MS;
+        expire(cutoff);
+        if (username != null) {
+            Long last = alertSenders.get(username);
+            if (last != null && last >= cutoff) return true;
+        }
+        if (latitude == null || longitude == null) return false;
+
+        long row = cell(latitude);
+        long col = cell(longitude);
+        // cells get narrower away from the equator; widen the longitude span to match
+        double cellWidthKm = KM_PER_DEG * CELL_DEG * Math.cos(Math.toRadians(latitude));
+        long span = Math.min(50, (long) Math.ceil(PRIORITY_RADIUS_KM / Math.max(cellWidthKm, 1e-3)));
+        for (long r = row - 1; r <= row + 1; r++) {
+            for (long c = col - span; c <= col + span; c++) {
+                Queue<ActiveAlert> q = alertCells.get(cellKey(r, c));
+                if (q == null) continue;
+                for (ActiveAlert a : q) {
+                    if (a.at >= cutoff
+                            && GeoUtils.haversine(latitude, longitude, a.latLon[0], a.latLon[1]) <= PRIORITY_RADIUS_KM) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // drop alerts older than cutoff from the head of the arrival queue and from the indexes
+    // (a back-dated alert behind a newer one waits for it; readers check the time anyway)
+    private void expire(long cutoff) {
+        ActiveAlert head;
+        while ((head = expiryQueue.peek()) != null && head.at < cutoff) {
+            if (!expiryQueue.remove(head)) continue; // another thread took it
+            ActiveAlert expired = head;
+            if (expired.senderUsername != null) alertSenders.remove(expired.senderUsername, expired.at);
+            if (expired.latLon != null) {
+                alertCells.computeIfPresent(cellKey(expired.latLon[0], expired.latLon[1]), (k, q) -> {
+                    q.remove(expired);
+                    return q.isEmpty() ? null : q;
+                });
+            }
+        }
+    }
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEG);
+    }
+
+    private static long cellKey(double lat, double lon) {
+        return cellKey(cell(lat), cell(lon));
+    }
+
+    private static long cellKey(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // counts this fix; estimates the offered rate over the last second
+    private synchronized double offeredRate(long now) {
+        roll(now);
+        currentCount++;
+        return rate(now);
+    }
+
+    // the same estimate without counting a fix
+    private synchronized double currentRate(long now) {
+        roll(now);
+        return rate(now);
+    }
+
+    private void roll(long now) {
+        long second = now / 1000;
+        if (second != currentSecond) {
+            previousCount = second == currentSecond + 1 ? currentCount : 0;
+            currentSecond = second;
+            currentCount = 0;
+        }
+    }
+
+    // sliding window: the part of the previous second still inside the last 1000 ms
+    private double rate(long now) {
+        double elapsed = (now % 1000) / 1000.0;
+        return currentCount + previousCount * (1 - elapsed);
+    }
+
+    // takes a token if one is left; priority fixes are always admitted
+    private synchronized boolean admit(long now, boolean priority) {
+        int capacity = Math.max(1, capacityPerSecond);
+        if (tokens < 0) {
+            tokens = capacity; // first fix: start with a full bucket
+        } else if (now > lastRefillMs) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillMs) * capacity / 1000.0);
+        }
+        lastRefillMs = Math.max(lastRefillMs, now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return priority;
+    }
+
+    private static class Fix {
+        final double lat;
+        final double lon;
+        final long at;
+
+        Fix(double lat, double lon, long at) {
+            this.lat = lat;
+            this.lon = lon;
+            this.at = at;
+        }
+    }
+
+    private static class ActiveAlert {
+        final String senderUsername;
+        final double[] latLon;
+        final long at;
+
+        ActiveAlert(String senderUsername, double[] latLon, long at) {
+            this.senderUsername = senderUsername;
+            this.latLon = latLon;
+            this.at = at;
+        }
+    }
+
+    // recommendation sent back to the app
+    public static class Cadence {
+        private final long nextReportMs;
+        private final int distanceFilterM;
+        private final boolean shed;
+
+        public Cadence(long nextReportMs, int distanceFilterM, boolean shed) {
+            this.nextReportMs = nextReportMs;
+            this.distanceFilterM = distanceFilterM;
+            this.shed = shed;
+        }
+
+        public long getNextReportMs() {
+            return nextReportMs;
+        }
+
+        public int getDistanceFilterM() {
+            return distanceFilterM;
+        }
+
+        public boolean isShed() {
+            return shed;
+        }
+    }
+}
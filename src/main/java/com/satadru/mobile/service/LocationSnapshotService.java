@@ -0,0 +1,126 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Tourist;
+import com.satadru.mobile.repository.TouristRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one immutable, versioned snapshot of all tourist locations.
+ *
+ * Every write that changes a location calls {@link #publish(Tourist)}, which bumps the
+ * version and swaps the saved tourist into a copy of the previous list, without
+ * touching the DB. Readers (map WebView, heat map, dashboard) get the cached snapshot
+ * instead of hitting the DB, can send the ETag back for a 304, or ask only for the
+ * tourists that changed since a version they already have.
+ */
+@Service
+public class LocationSnapshotService {
+
+    @Autowired
+    private TouristRepository touristRepository;
+
+    // seeded with the startup time so versions keep increasing across restarts
+    private final long baseVersion = System.currentTimeMillis();
+    private final AtomicLong versionCounter = new AtomicLong(baseVersion);
+
+    // tourist DB id -> version in which that tourist last changed
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+
+    private volatile Snapshot current;
+
+    // Returns the current snapshot, loading it on first use
+    public Snapshot current() {
+        Snapshot s = current;
+        if (s == null) {
+            s = publishAll();
+        }
+        return s;
+    }
+
+    // Reload every location from the table (startup, bulk seed) and mark all as changed
+    public synchronized Snapshot publishAll() {
+        long version = versionCounter.incrementAndGet();
+        List<Tourist> all = List.copyOf(touristRepository.findAll());
+        for (Tourist t : all) changedAt.put(t.getId(), version);
+        Snapshot s = new Snapshot(version, all);
+        current = s;
+        return s;
+    }
+
+    // Publish a new version with one saved tourist replaced (or added) in the previous list
+    public Snapshot publish(Tourist changed) {
+        if (current == null) {
+            return publishAll(); // first write after startup: nothing to copy from yet
+        }
+        synchronized (this) {
+            List<Tourist> prev = current.getTourists();
+            List<Tourist> next = new ArrayList<>(prev.size() + 1);
+            boolean replaced = false;
+            for (Tourist t : prev) {
+                if (t.getId().equals(changed.getId())) {
+                    next.add(changed);
+                    replaced = true;
+                } else {
+                    next.add(t);
+                }
+            }
+            if (!replaced) next.add(changed);
+
+            long version = versionCounter.incrementAndGet();
+            changedAt.put(changed.getId(), version);
+            Snapshot s = new Snapshot(version, Collections.unmodifiableList(next));
+            current = s;
+            return s;
+        }
+    }
+
+    // true if the caller's version predates this process, or is ahead of the snapshot
+    // (handed out by an earlier process whose clock ran ahead), so a delta can't be computed
+    public boolean isStale(Snapshot snapshot, long sinceVersion) {
+        return sinceVersion < baseVersion || sinceVersion > snapshot.getVersion();
+    }
+
+    // tourists in the given snapshot that changed after sinceVersion
+    public List<Tourist> changesSince(Snapshot snapshot, long sinceVersion) {
+        if (isStale(snapshot, sinceVersion)) return snapshot.getTourists();
+        List<Tourist> changed = new ArrayList<>();
+        for (Tourist t : snapshot.getTourists()) {
+            Long v = changedAt.get(t.getId());
+            if (v != null && v > sinceVersion) changed.add(t);
+        }
+        return changed;
+    }
+
+    // immutable view of the location set at one version
+    public static class Snapshot {
+        private final long version;
+        private final String etag;
+        private final List<Tourist> tourists;
+
+        public Snapshot(long version, List<Tourist> tourists) {
+            this.version = version;
+            this.etag = "\"loc-" + version + "\"";
+            this.tourists = tourists;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public List<Tourist> getTourists() {
+            return tourists;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Drops GPS jitter before it reaches the DB and /topic/locations.
+ *
+ * Each fix is optionally smoothed (exponential moving average, location.filter.smoothing-alpha;
+ * 1.0 = off) and then compared with the last persisted position. It is only persisted when
+ * it moved at least location.filter.min-displacement-m and at least
+ * location.filter.min-interval-ms passed since the last persisted fix. The filter runs
+ * before ingest admission, so suppressed fixes never use up ingest capacity; a fix
+ * only becomes the new reference once the caller has stored it ({@link #markPersisted}).
+ * Every fix that reaches the server, kept, filtered or shed, refreshes the tourist's
+ * last-seen heartbeat through {@link #touch(Long)}.
+ */
+@Service
+public class MovementFilterService {
+
+    @Value("${location.filter.min-displacement-m:10}")
+    private double minDisplacementM;
+
+    @Value("${location.filter.min-interval-ms:1000}")
+    private long minIntervalMs;
+
+    @Value("${location.filter.smoothing-alpha:1.0}")
+    private double smoothingAlpha;
+
+    private final LongSupplier clock;
+
+    // tourist DB id -> filter state
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+
+    // tourist DB id -> last time any fix arrived
+    private final Map<Long, LocalDateTime> lastSeen = new ConcurrentHashMap<>();
+
+    // record that the tourist's app reported in, whatever happens to the fix afterwards
+    public void touch(Long touristId) {
+        lastSeen.put(touristId, LocalDateTime.now());
+    }
+
+    public MovementFilterService() {
+        this.clock = System::currentTimeMillis;
+    }
+
+    MovementFilterService(double minDisplacementM, long minIntervalMs, double smoothingAlpha, LongSupplier clock) {
+        this.minDisplacementM = minDisplacementM;
+        this.minIntervalMs = minIntervalMs;
+        this.smoothingAlpha = smoothingAlpha;
+        this.clock = clock;
+    }
+
+    /**
+     * Run one fix through the filter. Fixes without coordinates are always persisted,
+     * as before. The caller is expected to have called {@link #touch(Long)} already.
+     */
+    public Decision accept(Long touristId, Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return new Decision(true, latitude, longitude);
+        }
+        long now = clock.getAsLong();
+        Decision[] out = new Decision[1];
+        states.compute(touristId, (id, s) -> {
+            if (s == null) {
+                s = new State(latitude, longitude);
+            } else {
+                double alpha = Math.max(0.0, Math.min(1.0, smoothingAlpha));
+                s.smoothLat += alpha * (latitude - s.smoothLat);
+                s.smoothLon += alpha * (longitude - s.smoothLon);
+            }
+            // nothing stored yet (first fix, or the previous one was shed): always keep
+            boolean keep = !s.persisted
+                    || (GeoUtils.haversine(s.persistedLat, s.persistedLon, s.smoothLat, s.smoothLon) * 1000 >= minDisplacementM
+                        && now - s.persistedAt >= minIntervalMs);
+            out[0] = new Decision(keep, s.smoothLat, s.smoothLon);
+            return s;
+        });
+        return out[0];
+    }
+
+    // the fix behind this decision was stored; later fixes are measured against it
+    public void markPersisted(Long touristId, Decision decision) {
+        if (decision.getLatitude() == null || decision.getLongitude() == null) return;
+        long now = clock.getAsLong();
+        states.computeIfPresent(touristId, (id, s) -> {
+            s.persistedLat = decision.getLatitude();
+            s.persistedLon = decision.getLongitude();
+            s.persistedAt = now;
+            s.persisted = true;
+            return s;
+        });
+    }
+
+    public Map<Long, LocalDateTime> getLastSeen() {
+        return Map.copyOf(lastSeen);
+    }
+
+    private static class State {
+        double smoothLat;
+        double smoothLon;
+        double persistedLat;
+        double persistedLon;
+        long persistedAt;
+        boolean persisted;
+
+        State(double lat, double lon) {
+            this.smoothLat = lat;
+            this.smoothLon = lon;
+        }
+    }
+
+    // whether to persist/broadcast, and the (smoothed) coordinates to store
+    public static class Decision {
+        private final boolean persist;
+        private final Double latitude;
+        private final Double longitude;
+
+        public Decision(boolean persist, Double latitude, Double longitude) {
+            this.persist = persist;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public boolean isPersist() {
+            return persist;
+        }
+
+        public Double getLatitude() {
+            return latitude;
+        }
+
+        public Double getLongitude() {
+            return longitude;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import com.satadru.mobile.repository.AlertRepository;
+import com.satadru.mobile.repository.EfirRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory inverted index over alert and E-FIR text.
+ *
+ * Indexed fields: Alert.details, Alert.missingName, Alert.location and Efir.details.
+ * The index is rebuilt from the archive segments and the tables once the app is up and
+ * then kept current by DatabaseController on every alert / E-FIR write, so searches
+ * never scan the @Lob columns in MySQL. Archived rows stay searchable.
+ *
+ * Query rules: terms are ANDed and the last term matches as a prefix once it has at
+ * least MIN_PREFIX_LENGTH characters, so search-as-you-type works ("red back" finds
+ * "red backpack"). Results are newest id first and the walk stops at the limit.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    // shorter last terms match exactly; a 1-2 char prefix would fan out to most of the index
+    static final int MIN_PREFIX_LENGTH = 3;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private EfirRepository efirRepository;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    private final TextIndex alertIndex = new TextIndex();
+    private final TextIndex efirIndex = new TextIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // archived rows first, then the live tables
+        archiveService.forEachAlert(this::indexAlert);
+        archiveService.forEachEfir(this::indexEfir);
+
+        // keyset paging by id: stable while the archive job deletes rows, and no OFFSET scans
+        long lastId = 0;
+        List<Alert> alerts;
+        do {
+            alerts = alertRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (Alert a : alerts) {
+                indexAlert(a);
+                lastId = a.getId();
+            }
+        } while (alerts.size() == REBUILD_PAGE_SIZE);
+
+        lastId = 0;
+        List<Efir> efirs;
+        do {
+            efirs = efirRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (Efir e : efirs) {
+                indexEfir(e);
+                lastId = e.getId();
+            }
+        } while (efirs.size() == REBUILD_PAGE_SIZE);
+    }
+
+    public void indexAlert(Alert a) {
+        if (a == null || a.getId() == null) return;
+        String text = join(a.getDetails(), a.getMissingName(), a.getLocation());
+        alertIndex.put(a.getId(), text, new DocMeta(a.getType(), null, a.getDateTime()));
+    }
+
+    public void indexEfir(Efir e) {
+        if (e == null || e.getId() == null) return;
+        efirIndex.put(e.getId(), e.getDetails(), new DocMeta(null, e.getStation(), e.getDateTime()));
+    }
+
+    public void removeAlert(Long id) {
+        alertIndex.remove(id);
+    }
+
+    public void removeEfir(Long id) {
+        efirIndex.remove(id);
+    }
+
+    // ids of matching alerts, newest first; type/from/to are optional filters
+    public List<Long> searchAlerts(String query, String type, LocalDateTime from, LocalDateTime to, int limit) {
+        return alertIndex.search(query, new Filter(type, null, from, to), limit);
+    }
+
+    // ids of matching E-FIRs, newest first; station/from/to are optional filters
+    public List<Long> searchEfirs(String query, String station, LocalDateTime from, LocalDateTime to, int limit) {
+        return efirIndex.search(query, new Filter(null, station, from, to), limit);
+    }
+
+    // lower-cased letter/digit runs; used for both documents and queries
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                tokens.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (sb.length() > 0) tokens.add(sb.toString());
+        return tokens;
+    }
+
+    private static String join(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (p != null) sb.append(p).append(' ');
+        }
+        return sb.toString();
+    }
+
+    // per-document fields needed for filtering without touching the DB
+    private static class DocMeta {
+        final String type;
+        final String station;
+        final LocalDateTime dateTime;
+        final Set<String> terms = new HashSet<>();
+
+        DocMeta(String type, String station, LocalDateTime dateTime) {
+            this.type = type;
+            this.station = station;
+            this.dateTime = dateTime;
+        }
+    }
+
+    private static class Filter {
+        final String type;
+        final String station;
+        final LocalDateTime from;
+        final LocalDateTime to;
+
+        Filter(String type, String station, LocalDateTime from, LocalDateTime to) {
+            this.type = type;
+            this.station = station;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean accepts(DocMeta m) {
+            if (type != null && !type.equalsIgnoreCase(m.type)) return false;
+            if (station != null && !station.equalsIgnoreCase(m.station)) return false;
+            if (from != null && (m.dateTime == null || m.dateTime.isBefore(from))) return false;
+            if (to != null && (m.dateTime == null || m.dateTime.isAfter(to))) return false;
+            return true;
+        }
+    }
+
+    private static class TextIndex {
+        // sorted term dictionary so prefix lookups are a range scan
+        private final ConcurrentSkipListMap<String, Postings> postings = new ConcurrentSkipListMap<>();
+        private final Map<Long, DocMeta> docs = new ConcurrentHashMap<>();
+
+        synchronized void put(Long id, String text, DocMeta meta) {
+            remove(id);
+            meta.terms.addAll(tokenize(text));
+            for (String term : meta.terms) {
+                postings.computeIfAbsent(term, k -> new Postings()).add(id);
+            }
+            docs.put(id, meta);
+        }
+
+        synchronized void remove(Long id) {
+            DocMeta old = docs.remove(id);
+            if (old == null) return;
+            for (String term : old.terms) {
+                Postings p = postings.get(term);
+                if (p == null) continue;
+                p.remove(id);
+                if (p.size() == 0) postings.remove(term);
+            }
+        }
+
+        List<Long> search(String query, Filter filter, int limit) {
+            List<String> terms = tokenize(query);
+            List<Long> result = new ArrayList<>();
+            if (terms.isEmpty()) return result;
+
+            // last term is a prefix unless it's too short to narrow anything down
+            String last = terms.get(terms.size() - 1);
+            String prefix = last.length() >= MIN_PREFIX_LENGTH ? last : null;
+            List<String> exactTerms = prefix == null ? terms : terms.subList(0, terms.size() - 1);
+
+            List<Postings> exact = new ArrayList<>();
+            for (String term : exactTerms) {
+                Postings p = postings.get(term);
+                if (p == null) return result;
+                exact.add(p);
+            }
+
+            Iterator<Long> candidates;
+            if (exact.isEmpty()) {
+                candidates = mergeNewestFirst(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+            } else {
+                // drive from the rarest exact term, probe the rest
+                exact.sort(Comparator.comparingInt(Postings::size));
+                candidates = exact.get(0).ids.iterator();
+            }
+
+            while (candidates.hasNext() && result.size() < limit) {
+                Long id = candidates.next();
+                boolean all = true;
+                for (int i = 1; i < exact.size() && all; i++) {
+                    all = exact.get(i).ids.contains(id);
+                }
+                if (!all) continue;
+                DocMeta meta = docs.get(id);
+                if (meta == null || !filter.accepts(meta)) continue;
+                if (prefix != null && !exact.isEmpty() && !hasTermWithPrefix(meta, prefix)) continue;
+                result.add(id);
+            }
+            return result;
+        }
+
+        private static boolean hasTermWithPrefix(DocMeta meta, String prefix) {
+            for (String t : meta.terms) {
+                if (t.startsWith(prefix)) return true;
+            }
+            return false;
+        }
+
+        // lazy k-way merge of newest-first posting lists; nothing is copied up front
+        private static Iterator<Long> mergeNewestFirst(Collection<Postings> lists) {
+            PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> Long.compare(b.id, a.id));
+            for (Postings p : lists) {
+                Iterator<Long> it = p.ids.iterator();
+                if (it.hasNext()) heads.add(new Head(it.next(), it));
+            }
+            return new Iterator<>() {
+                private long lastId = Long.MIN_VALUE;
+                private boolean started;
+
+                @Override
+                public boolean hasNext() {
+                    // skip ids already returned through another term of the same prefix
+                    while (!heads.isEmpty() && started && heads.peek().id == lastId) advance();
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public Long next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    lastId = heads.peek().id;
+                    started = true;
+                    advance();
+                    return lastId;
+                }
+
+                private void advance() {
+                    Head h = heads.poll();
+                    if (h.rest.hasNext()) heads.add(new Head(h.rest.next(), h.rest));
+                }
+            };
+        }
+    }
+
+    private static class Head {
+        final long id;
+        final Iterator<Long> rest;
+
+        Head(long id, Iterator<Long> rest) {
+            this.id = id;
+            this.rest = rest;
+        }
+    }
+
+    // ids for one term, newest first, with a size counter (skip-list size() is O(n))
+    private static class Postings {
+        final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+        private final AtomicInteger count = new AtomicInteger();
+
+        void add(Long id) {
+            if (ids.add(id)) count.incrementAndGet();
+        }
+
+        void remove(Long id) {
+            if (ids.remove(id)) count.decrementAndGet();
+        }
+
+        int size() {
+            return count.get();
+        }
+    }
+}
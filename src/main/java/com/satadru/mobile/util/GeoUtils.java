@@ -0,0 +1,30 @@
+package com.satadru.mobile.util;
+
+public final class GeoUtils {
+
+    private GeoUtils() {
+    }
+
+    // haversine (km)
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        final int R = 6371;
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat/2) * Math.sin(dLat/2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon/2) * Math.sin(dLon/2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
+        return R * c;
+    }
+
+    // parses a "lat,lon" string as stored in Alert.location; null if it isn't one
+    public static double[] parseLatLon(String location) {
+        if (location == null || !location.contains(",")) return null;
+        try {
+            String[] parts = location.split(",");
+            return new double[] { Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveSegmentTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 10, 12, 0, 0, 123_000_000);
+
+    @TempDir
+    Path dir;
+
+    // 200 alerts with even ids 2..400, so every odd id inside the range is absent
+    private ArchiveSegment<Alert> writeAlerts() throws IOException {
+        List<Alert> rows = new ArrayList<>();
+        for (int i = 200; i >= 1; i--) { // written out of order on purpose
+            Alert a = new Alert("crime", "user" + (i % 3), "T" + i, T0.plusHours(i), "22.5,88.3", "details " + i);
+            a.setId(2L * i);
+            if (i % 2 == 0) a.setClientId("c-" + i);
+            rows.add(a);
+        }
+        return ArchiveSegment.write(dir.resolve("alerts-1.seg"), rows, ArchiveService.ALERT_CODEC);
+    }
+
+    @Test
+    void writeThenOpenKeepsMetadata() throws IOException {
+        writeAlerts();
+        ArchiveSegment<Alert> s = ArchiveSegment.open(dir.resolve("alerts-1.seg"), ArchiveService.ALERT_CODEC);
+        assertEquals(200, s.getCount());
+        assertEquals(2L, s.getMinId());
+        assertEquals(400L, s.getMaxId());
+        assertEquals(T0.plusHours(1), s.getMinDate());
+        assertEquals(T0.plusHours(200), s.getMaxDate());
+    }
+
+    @Test
+    void findByIdAcrossSparseIndex() throws IOException {
+        ArchiveSegment<Alert> s = ArchiveSegment.open(writeAlerts().getPath(), ArchiveService.ALERT_CODEC);
+
+        Alert first = s.findById(2L).orElseThrow();
+        assertEquals("details 1", first.getDetails());
+        assertEquals(T0.plusHours(1), first.getDateTime());
+        assertEquals("user1", first.getSenderUsername());
+        Alert last = s.findById(400L).orElseThrow();
+        assertEquals("details 200", last.getDetails());
+        assertEquals("T200", last.getSenderTouristId());
+
+        // records at index 64 and 128 start a sparse slot; check them and their neighbours
+        for (int index : new int[]{63, 64, 65, 127, 128, 129}) {
+            long id = 2L * (index + 1);
+            assertEquals(id, s.findById(id).orElseThrow().getId());
+        }
+    }
+
+    @Test
+    void findByIdMissesAbsentAndOutOfRangeIds() throws IOException {
+        ArchiveSegment<Alert> s = writeAlerts();
+        assertTrue(s.findById(1L).isEmpty());   // below the first record
+        assertTrue(s.findById(129L).isEmpty()); // absent, between two sparse entries
+        assertTrue(s.findById(255L).isEmpty());
+        assertTrue(s.findById(401L).isEmpty()); // above the last record
+    }
+
+    @Test
+    void findBySenderAndBetween() throws IOException {
+        ArchiveSegment<Alert> s = writeAlerts();
+        List<Alert> user0 = s.findBySender("user0");
+        assertEquals(66, user0.size());
+        assertTrue(user0.stream().allMatch(a -> "user0".equals(a.getSenderUsername())));
+        assertTrue(s.findBySender("nobody").isEmpty());
+
+        List<Alert> window = s.findBetween(T0.plusHours(10), T0.plusHours(12));
+        assertEquals(List.of(20L, 22L, 24L), window.stream().map(Alert::getId).toList());
+        assertTrue(s.findBetween(T0.plusHours(201), null).isEmpty());
+        assertTrue(s.findBetween(null, T0).isEmpty());
+    }
+
+    @Test
+    void nullStringsAndDateTimeRoundTrip() throws IOException {
+        Alert a = new Alert(null, null, null, null, null, null);
+        a.setId(7L);
+        ArchiveSegment<Alert> s = ArchiveSegment.write(dir.resolve("alerts-2.seg"), List.of(a), ArchiveService.ALERT_CODEC);
+
+        Alert back = s.findById(7L).orElseThrow();
+        assertNull(back.getType());
+        assertNull(back.getSenderUsername());
+        assertNull(back.getDetails());
+        assertNull(back.getMissingName());
+        assertNull(back.getDateTime());
+        assertNull(s.getMinDate());
+        assertTrue(s.findBetween(null, null).isEmpty());
+        assertTrue(s.findBySender(null).isEmpty());
+    }
+
+    @Test
+    void efirAlertIdRoundTrip() throws IOException {
+        Efir linked = new Efir(T0, "Behala Police Station", "theft", 42L, "user");
+        linked.setId(1L);
+        Efir manual = new Efir(T0, "Behala Police Station", "lost phone", null, "user");
+        manual.setId(2L);
+        ArchiveSegment<Efir> s = ArchiveSegment.write(dir.resolve("efirs-1.seg"), List.of(linked, manual), ArchiveService.EFIR_CODEC);
+
+        assertEquals(42L, s.findById(1L).orElseThrow().getAlertId());
+        Efir back = s.findById(2L).orElseThrow();
+        assertNull(back.getAlertId());
+        assertEquals("lost phone", back.getDetails());
+        assertEquals(T0, back.getDateTime());
+    }
+
+    @Test
+    void clientIdRoundTrip() throws IOException {
+        ArchiveSegment<Alert> s = writeAlerts();
+        assertEquals(200L, s.findIdByClientId("c-100").orElseThrow());
+        assertTrue(s.findIdByClientId("c-99").isEmpty());
+        assertTrue(s.findIdByClientId(null).isEmpty());
+        assertEquals("c-100", s.findById(200L).orElseThrow().getClientId());
+        assertNull(s.findById(198L).orElseThrow().getClientId());
+    }
+}
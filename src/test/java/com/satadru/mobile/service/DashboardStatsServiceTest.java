@@ -0,0 +1,130 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import com.satadru.mobile.repository.AlertRepository;
+import com.satadru.mobile.repository.EfirRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DashboardStatsServiceTest {
+
+    private AlertRepository alertRepository;
+    private EfirRepository efirRepository;
+    private ArchiveService archiveService;
+    private DashboardStatsService stats;
+
+    @BeforeEach
+    void setUp() {
+        alertRepository = mock(AlertRepository.class);
+        efirRepository = mock(EfirRepository.class);
+        archiveService = mock(ArchiveService.class);
+        stats = new DashboardStatsService();
+        ReflectionTestUtils.setField(stats, "alertRepository", alertRepository);
+        ReflectionTestUtils.setField(stats, "efirRepository", efirRepository);
+        ReflectionTestUtils.setField(stats, "archiveService", archiveService);
+        ReflectionTestUtils.setField(stats, "retentionHours", 168);
+        when(alertRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+        when(efirRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void writesDuringRebuildAreCountedOnce() {
+        Alert a1 = alert(1L, "crime");
+        Alert a2 = alert(2L, "crime");
+        Alert a3 = alert(3L, "distress");
+        Alert a4 = alert(4L, "distress");
+        when(alertRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(a3));
+        doAnswer(inv -> {
+            Consumer<Alert> action = inv.getArgument(0);
+            action.accept(alert(-1L, "crime")); // one archived alert
+            return null;
+        }).when(archiveService).forEachAlert(any());
+        when(alertRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenAnswer(inv -> {
+            stats.recordAlert(a3); // committed before the rebuild started, published late: the scan counts it
+            stats.recordAlert(a4); // written mid-scan: replayed from the buffer
+            return List.of(a1, a2, a3);
+        });
+
+        stats.rebuild();
+
+        assertEquals(Map.of("crime", 3L, "distress", 2L), stats.snapshot(24).get("alertsByType"));
+        verify(alertRepository, never()).findByIdGreaterThanOrderByIdAsc(eq(3L), any(Pageable.class));
+    }
+
+    @Test
+    void rebuildPagesByIdUpToTheMaxId() {
+        when(alertRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(alert(5L, "crime")));
+        when(alertRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(alert(1L, "crime"), alert(3L, "crime")));
+        when(alertRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), any(Pageable.class)))
+                .thenReturn(List.of(alert(5L, "crime"), alert(6L, "crime")));
+
+        stats.rebuild();
+
+        // id 6 is above the mark taken at the start and was never recorded live
+        assertEquals(Map.of("crime", 3L), stats.snapshot(24).get("alertsByType"));
+    }
+
+    @Test
+    void archivedEfirsAreNotOpen() {
+        Efir e1 = efir(1L, "Behala");
+        Efir e2 = efir(2L, "Behala");
+        Efir e3 = efir(3L, "Serampore");
+        when(efirRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(e3));
+        when(efirRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenAnswer(inv -> {
+            // the archive job deletes e1 after this page was read
+            stats.onEfirsArchived(new ArchiveService.EfirsArchived(List.of(e1)));
+            return List.of(e1, e2, e3);
+        });
+
+        stats.rebuild();
+        assertEquals(Map.of("Behala", 1L, "Serampore", 1L), stats.snapshot(24).get("efirsByStation"));
+
+        stats.recordEfir(efir(4L, "Serampore"));
+        stats.onEfirsArchived(new ArchiveService.EfirsArchived(List.of(e2, e3)));
+        assertEquals(Map.of("Serampore", 1L), stats.snapshot(24).get("efirsByStation"));
+    }
+
+    @Test
+    void efirsArchivedAfterTheScanPassedThemAreClosed() {
+        Efir e1 = efir(1L, "Behala");
+        Efir e2 = efir(2L, "Behala");
+        when(efirRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(e2));
+        when(efirRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenReturn(List.of(e1));
+        when(efirRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), any(Pageable.class))).thenAnswer(inv -> {
+            // e1 is already counted by the first page when the archive job deletes it
+            stats.onEfirsArchived(new ArchiveService.EfirsArchived(List.of(e1)));
+            return List.of(e2);
+        });
+
+        stats.rebuild();
+
+        assertEquals(Map.of("Behala", 1L), stats.snapshot(24).get("efirsByStation"));
+    }
+
+    private static Alert alert(Long id, String type) {
+        Alert a = new Alert(type, "user", "T001", LocalDateTime.now(), "", "details");
+        a.setId(id);
+        return a;
+    }
+
+    private static Efir efir(Long id, String station) {
+        Efir e = new Efir(LocalDateTime.now(), station, "details", null, "user");
+        e.setId(id);
+        return e;
+    }
+}
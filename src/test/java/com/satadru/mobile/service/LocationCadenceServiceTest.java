@@ -0,0 +1,117 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Tourist;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationCadenceServiceTest {
+
+    private static final int CAPACITY = 100;
+
+    private long now = 1_000_000L;
+
+    @Test
+    void steadyOverloadStillAdmitsCapacity() {
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+
+        // 2.5x capacity, spread evenly over each second, for 10 seconds
+        int perSecond = CAPACITY * 5 / 2;
+        for (int second = 0; second < 10; second++) {
+            int admitted = 0;
+            long last = 0;
+            for (int i = 0; i < perSecond; i++) {
+                now = 1_000_000L + second * 1000L + i * 1000L / perSecond;
+                LocationCadenceService.Cadence c = cadence.onFix(tourist(i), 22.5, 88.3, true);
+                if (!c.isShed()) admitted++;
+                last = c.getNextReportMs();
+            }
+            if (second > 0) { // the first second also drains the initial full bucket
+                assertTrue(admitted >= CAPACITY - 2 && admitted <= CAPACITY + 2,
+                        "second " + second + " admitted " + admitted);
+            }
+            // everyone is asked to slow down while the offered rate is above capacity
+            assertTrue(last > 30000, "interval " + last);
+        }
+    }
+
+    @Test
+    void underCapacityNothingIsShed() {
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+        for (int i = 0; i < 5 * CAPACITY; i++) {
+            now = 1_000_000L + i * 1000L / (CAPACITY / 2);
+            LocationCadenceService.Cadence c = cadence.onFix(tourist(i), 22.5, 88.3, true);
+            assertFalse(c.isShed());
+            assertEquals(30000, c.getNextReportMs());
+        }
+    }
+
+    @Test
+    void priorityFixesAreNeverShed() {
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+        cadence.recordAlert(alert("user7", "22.5,88.3"));
+
+        for (int i = 0; i < 3 * CAPACITY; i++) {
+            cadence.onFix(tourist(1000 + i), 10.0, 70.0, true); // burst far from the alert
+        }
+        Tourist near = tourist(1);
+        LocationCadenceService.Cadence c = cadence.onFix(near, 22.5001, 88.3001, true);
+        assertFalse(c.isShed());
+        assertEquals(2000, c.getNextReportMs());
+        assertTrue(cadence.onFix(tourist(2000), 10.0, 70.0, true).isShed());
+    }
+
+    @Test
+    void filteredFixesDontUseCapacity() {
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+        for (int i = 0; i < 3 * CAPACITY; i++) {
+            assertFalse(cadence.onFix(tourist(i), 22.5, 88.3, false).isShed());
+        }
+        // the bucket is still full: a whole second's worth of real moves goes through
+        for (int i = 0; i < CAPACITY; i++) {
+            assertFalse(cadence.onFix(tourist(i), 22.5, 88.3, true).isShed());
+        }
+    }
+
+    @Test
+    void priorityLastsForTheActiveWindow() {
+        now = 1_700_000_000_000L;
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+        cadence.recordAlert(alert("user7", "22.5,88.3"));
+
+        assertEquals(2000, cadence.onFix(tourist(7), 10.0, 70.0, true).getNextReportMs()); // own alert, far away
+        assertEquals(2000, cadence.onFix(tourist(1), 22.5, 88.3, true).getNextReportMs());
+
+        now += 121 * 60 * 1000L;
+        assertEquals(30000, cadence.onFix(tourist(7), 10.0, 70.0, true).getNextReportMs());
+        assertEquals(30000, cadence.onFix(tourist(2), 22.5, 88.3, true).getNextReportMs());
+    }
+
+    @Test
+    void nearbyAlertInTheNextGridCellCounts() {
+        LocationCadenceService cadence = new LocationCadenceService(CAPACITY, () -> now);
+        cadence.recordAlert(alert("user7", "22.50001,88.30001"));
+
+        // ~300 m away across a cell edge in both directions
+        assertEquals(2000, cadence.onFix(tourist(1), 22.4978, 88.2982, true).getNextReportMs());
+        // ~1.5 km away
+        assertEquals(30000, cadence.onFix(tourist(2), 22.5135, 88.3001, true).getNextReportMs());
+    }
+
+    private Alert alert(String sender, String location) {
+        LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault());
+        return new Alert("distress", sender, "T7", at, location, "help");
+    }
+
+    private static Tourist tourist(long id) {
+        Tourist t = new Tourist();
+        t.setId(id);
+        t.setUsername("user" + id);
+        return t;
+    }
+}
@@ -0,0 +1,87 @@
+package com.satadru.mobile.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementFilterServiceTest {
+
+    // ~0.00009 degrees of latitude per metre
+    private static final double METRE = 1.0 / 111_320;
+
+    private long now = 1_000_000L;
+
+    @Test
+    void firstFixIsKeptUntilStored() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 1.0, () -> now);
+        assertTrue(filter.accept(1L, 22.5, 88.3).isPersist());
+        // not marked as stored (e.g. shed), so the next fix is still kept
+        now += 100;
+        MovementFilterService.Decision d = filter.accept(1L, 22.5, 88.3);
+        assertTrue(d.isPersist());
+        filter.markPersisted(1L, d);
+        now += 5000;
+        assertFalse(filter.accept(1L, 22.5, 88.3).isPersist());
+    }
+
+    @Test
+    void dropsMovesBelowTheDisplacementThreshold() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 1.0, () -> now);
+        filter.markPersisted(1L, filter.accept(1L, 22.5, 88.3));
+
+        now += 5000;
+        assertFalse(filter.accept(1L, 22.5 + 5 * METRE, 88.3).isPersist());
+        now += 5000;
+        MovementFilterService.Decision d = filter.accept(1L, 22.5 + 15 * METRE, 88.3);
+        assertTrue(d.isPersist());
+        assertEquals(22.5 + 15 * METRE, d.getLatitude(), 1e-9);
+    }
+
+    @Test
+    void dropsFixesInsideTheMinInterval() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 1.0, () -> now);
+        filter.markPersisted(1L, filter.accept(1L, 22.5, 88.3));
+
+        now += 500;
+        assertFalse(filter.accept(1L, 22.5 + 50 * METRE, 88.3).isPersist());
+        now += 600;
+        assertTrue(filter.accept(1L, 22.5 + 50 * METRE, 88.3).isPersist());
+    }
+
+    @Test
+    void smoothingPullsFixesTowardsTheAverage() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 0.5, () -> now);
+        filter.markPersisted(1L, filter.accept(1L, 22.5, 88.3));
+
+        // a 30 m spike moves the smoothed position only 15 m
+        now += 5000;
+        MovementFilterService.Decision d = filter.accept(1L, 22.5 + 30 * METRE, 88.3);
+        assertTrue(d.isPersist());
+        assertEquals(22.5 + 15 * METRE, d.getLatitude(), 1e-9);
+        filter.markPersisted(1L, d);
+
+        // a 16 m spike from there is halved to 8 m: below the threshold
+        now += 5000;
+        assertFalse(filter.accept(1L, 22.5 + 31 * METRE, 88.3).isPersist());
+    }
+
+    @Test
+    void fixesWithoutCoordinatesAreAlwaysKept() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 1.0, () -> now);
+        filter.markPersisted(1L, filter.accept(1L, 22.5, 88.3));
+
+        MovementFilterService.Decision d = filter.accept(1L, null, null);
+        assertTrue(d.isPersist());
+        assertNull(d.getLatitude());
+        filter.markPersisted(1L, d); // ignored: nothing to measure against
+        assertFalse(filter.accept(1L, 22.5, 88.3).isPersist());
+    }
+
+    @Test
+    void touchRecordsLastSeen() {
+        MovementFilterService filter = new MovementFilterService(10, 1000, 1.0, () -> now);
+        filter.touch(3L);
+        assertTrue(filter.getLastSeen().containsKey(3L));
+        assertFalse(filter.getLastSeen().containsKey(4L));
+    }
+}
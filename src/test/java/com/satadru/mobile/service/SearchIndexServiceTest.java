@@ -0,0 +1,87 @@
+package com.satadru.mobile.service;
+
+import com.satadru.mobile.model.Alert;
+import com.satadru.mobile.model.Efir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 10, 12, 0);
+
+    private SearchIndexService index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndexService();
+        index.indexAlert(alert(1L, "crime", "Stolen red backpack near Howrah bridge", T0));
+        index.indexAlert(alert(2L, "distress", "Lost my red umbrella", T0.plusHours(1)));
+        index.indexAlert(alert(3L, "crime", "Red backpack and phone taken", T0.plusHours(2)));
+        index.indexEfir(efir(10L, "Behala Police Station", "Backpack theft reported", T0));
+        index.indexEfir(efir(11L, "Serampore Police Station", "Backpack found", T0.plusDays(1)));
+    }
+
+    @Test
+    void termsAreAndedAndLastTermIsPrefix() {
+        assertEquals(List.of(3L, 1L), index.searchAlerts("red back", null, null, null, 10));
+        assertEquals(List.of(3L, 2L, 1L), index.searchAlerts("red", null, null, null, 10));
+        assertEquals(List.of(3L, 1L), index.searchAlerts("backp", null, null, null, 10));
+        assertTrue(index.searchAlerts("red backpack bicycle", null, null, null, 10).isEmpty());
+    }
+
+    @Test
+    void shortLastTermMatchesExactly() {
+        index.indexAlert(alert(4L, "distress", "re entry gate", T0));
+        // "re" is below MIN_PREFIX_LENGTH, so it must not expand to "red"
+        assertEquals(List.of(4L), index.searchAlerts("re", null, null, null, 10));
+    }
+
+    @Test
+    void limitStopsTheWalk() {
+        assertEquals(List.of(3L), index.searchAlerts("red", null, null, null, 1));
+    }
+
+    @Test
+    void reindexReplacesOldTerms() {
+        index.indexAlert(alert(1L, "crime", "Stolen blue suitcase", T0));
+        assertEquals(List.of(3L), index.searchAlerts("backpack", null, null, null, 10));
+        assertEquals(List.of(1L), index.searchAlerts("suitcase", null, null, null, 10));
+    }
+
+    @Test
+    void filtersByTypeStationAndTime() {
+        assertEquals(List.of(2L), index.searchAlerts("red", "distress", null, null, 10));
+        assertEquals(List.of(3L, 2L), index.searchAlerts("red", null, T0.plusMinutes(30), null, 10));
+        assertEquals(List.of(1L), index.searchAlerts("red", null, null, T0.plusMinutes(30), 10));
+        assertEquals(List.of(11L), index.searchEfirs("backpack", "serampore police station", null, null, 10));
+        assertEquals(List.of(10L), index.searchEfirs("backpack", null, null, T0.plusHours(1), 10));
+    }
+
+    @Test
+    void indexesMissingNameAndLocation() {
+        Alert a = alert(5L, "missing", "", T0);
+        a.setMissingName("Ishita Mandal");
+        a.setLocation("Victoria Memorial");
+        index.indexAlert(a);
+        assertEquals(List.of(5L), index.searchAlerts("ishita", null, null, null, 10));
+        assertEquals(List.of(5L), index.searchAlerts("victoria mem", null, null, null, 10));
+    }
+
+    private static Alert alert(Long id, String type, String details, LocalDateTime at) {
+        Alert a = new Alert(type, "user", "T001", at, "", details);
+        a.setId(id);
+        return a;
+    }
+
+    private static Efir efir(Long id, String station, String details, LocalDateTime at) {
+        Efir e = new Efir(at, station, details, null, "user");
+        e.setId(id);
+        return e;
+    }
+}